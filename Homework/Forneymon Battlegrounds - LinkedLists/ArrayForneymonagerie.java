@@ -0,0 +1,584 @@
+package main.forneymon.arena;
+
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import main.forneymon.fmtypes.*;
+
+/**
+ * Collections of Forneymon ready to fight in the arena, stored in a
+ * growable array so that get is O(1) for rosters read by position far
+ * more often than they are spliced. A map from each type to its index
+ * makes collect, containsType and getTypeIndex O(1) as well; remove and
+ * rearrange shift the elements between the two positions, updating
+ * their indices as they go.
+ */
+public class ArrayForneymonagerie implements ForneymonagerieInterface {
+
+    private static final int START_CAPACITY = 8;
+
+    // Fields
+    // -----------------------------------------------------------
+    private Forneymon[] collection;
+    private Map<String, Integer> typeIndex;
+    private int size, modCount;
+    // The hashCode of the set of types held, kept as they come and go
+    private int typeHash;
+
+
+    // Constructor
+    // -----------------------------------------------------------
+    public ArrayForneymonagerie () {
+        this.size = this.modCount = 0;
+        this.collection = new Forneymon[START_CAPACITY];
+        this.typeIndex = new HashMap<String, Integer>();
+    }
+
+    // Methods
+    // -----------------------------------------------------------
+    /**
+     * Checks if the given ArrayForneymonagerie is empty
+     * @return Return if this ArrayForneymonagerie is empty
+     */
+    public boolean empty () {
+        return this.size == 0;
+    }
+
+    /**
+     * @return Returns the number of Forneymon in the collection
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * Returns true if toAdd was newly added to the ArrayForneymonagerie and
+     * false otherwise, in which case its levels are added to the Forneymon
+     * of its type already collected.
+     * @param toAdd is the Forneymon type the user wants to add to the ArrayForneymonagerie.
+     * @return if the given Forneymon is of a new type and added to the end of the ArrayForneymonagerie.
+     */
+    public boolean collect (Forneymon toAdd) {
+        var existing = typeIndex.get(toAdd.getFMType());
+
+        if (existing != null) {
+            var fmToCheck = collection[existing];
+            if (fmToCheck != toAdd) {
+                fmToCheck.addLevels(toAdd.getLevel());
+                modCount++;
+            }
+            return false;
+        }
+        if (size == collection.length) {
+            grow();
+        }
+        collection[size] = toAdd;
+        typeIndex.put(toAdd.getFMType(), size);
+        typeHash += toAdd.getFMType().hashCode();
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the Forneymon of the given subtype from the
+     * ArrayForneymonagerie and returns true. If the given fmType doesn't
+     * exist then returns false.
+     * @param fmType The type of Forneymon to be removed from the collection.
+     * @return Returns true if the given Forneymon is being released, false otherwise.
+     */
+    public boolean releaseType (String fmType) {
+        var index = typeIndex.get(fmType);
+        if (index == null) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Returns the Forneymon at the given index in the ArrayForneymonagerie, if valid.
+     * @param index The index being checked for the Forneymon
+     * @return The Forneymon at the given index
+     */
+    public Forneymon get (int index) {
+        indexValidityCheck(index);
+        return collection[index];
+    }
+
+    /**
+     * Removes and returns the Fornyemon at the given index, if valid.
+     * @param index The index of the Forneymon to be removed.
+     * @return The Forneymon that was removed from the specified index.
+     */
+    public Forneymon remove (int index) {
+        indexValidityCheck(index);
+        var removed = collection[index];
+        typeIndex.remove(removed.getFMType());
+        typeHash -= removed.getFMType().hashCode();
+        shift(index + 1, size, index);
+        collection[--size] = null;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Returns the index of a Forneymon with the given fmType. Returns -1 if
+     * the type isn't found.
+     * @param fmType The Forneymon type checking if found in the ArrayForneymonagerie
+     * @return The index where the Forneymon type is in the collection, or -1 if the
+     * Forneymon type isn't found.
+     */
+    public int getTypeIndex (String fmType) {
+        return typeIndex.getOrDefault(fmType, -1);
+    }
+
+    /**
+     * Checks if a given Forneymon exists within the ArrayForneymonagerie.
+     * @param toCheck is the Forneymon type, as a String, specified by the user.
+     * @return Returns true if the given Forneymon type is found within the ArrayForneymonagerie, false otherwise
+     */
+    public boolean containsType (String toCheck) {
+        return typeIndex.containsKey(toCheck);
+    }
+
+    /**
+     * Trades the contents of this ArrayForneymonagerie and another ArrayForneymonagerie
+     * @param other The ArrayForneymonagerie whose Forneymon are swapped with this one's
+     */
+    public void trade (ArrayForneymonagerie other) {
+        var collection = this.collection;
+        var typeIndex = this.typeIndex;
+        var size = this.size;
+        var typeHash = this.typeHash;
+        var modCount = this.modCount;
+        this.collection = other.collection;
+        this.typeIndex = other.typeIndex;
+        this.size = other.size;
+        this.typeHash = other.typeHash;
+        this.modCount = other.modCount;
+        other.collection = collection;
+        other.typeIndex = typeIndex;
+        other.size = size;
+        other.typeHash = typeHash;
+        other.modCount = modCount;
+
+        this.modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Moves the Forneymon of the given type to the given index, shifting those
+     * in between over by one.
+     * @param fmType The type of Forneymon that is being rearranged.
+     * @param index The index where the Forneymon is being moved.
+     */
+    public void rearrange (String fmType, int index) {
+        indexValidityCheck(index);
+        var from = typeIndex.get(fmType);
+        if (from == null) {
+            throw new IllegalArgumentException();
+        }
+
+        var toMove = collection[from];
+        if (from < index) {
+            shift(from + 1, index + 1, from);
+        } else {
+            shift(index, from, index + 1);
+        }
+        collection[index] = toMove;
+        typeIndex.put(fmType, index);
+        modCount++;
+    }
+
+    /**
+     * Releases the Forneymon of each of the given types in one pass over the
+     * array, rather than one shift per type.
+     * @param fmTypes The types of Forneymon to release
+     * @return The number of Forneymon released
+     */
+    @Override
+    public int releaseTypes (Set<String> fmTypes) {
+        return retainIf(fm -> !fmTypes.contains(fm.getFMType()));
+    }
+
+    /**
+     * Releases every Forneymon that fails the given test in one pass, sliding
+     * those kept down over the gaps. Every Forneymon is tested before any is
+     * released, so a test that throws leaves the collection unchanged.
+     * @param keep The test each Forneymon kept must pass
+     * @return The number of Forneymon released
+     */
+    @Override
+    public int retainIf (Predicate<? super Forneymon> keep) {
+        var doomed = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (!keep.test(collection[i])) {
+                doomed.set(i);
+            }
+        }
+        if (doomed.isEmpty()) {
+            return 0;
+        }
+
+        int kept = doomed.nextSetBit(0);
+        for (int i = kept; i < size; i++) {
+            var fm = collection[i];
+            if (doomed.get(i)) {
+                typeIndex.remove(fm.getFMType());
+                typeHash -= fm.getFMType().hashCode();
+            } else {
+                collection[kept] = fm;
+                typeIndex.put(fm.getFMType(), kept++);
+            }
+        }
+        int released = size - kept;
+        for (int i = kept; i < size; i++) {
+            collection[i] = null;
+        }
+        size = kept;
+        modCount++;
+        return released;
+    }
+
+    /**
+     * Returns a new Iterator on the ArrayForneymonagerie that begins on the first Forneymon.
+     * @return The new Iterator
+     */
+    public ArrayForneymonagerie.Iterator getIterator () {
+        if (empty()) {
+            throw new IllegalStateException();
+        }
+        return new Iterator(this);
+    }
+
+    /**
+     * Returns a fail-fast java.util.Iterator over the Forneymon from first to last,
+     * for enhanced-for loops and streams. Unlike getIterator it does not wrap around,
+     * and it throws ConcurrentModificationException once the collection is changed
+     * other than through its own remove.
+     * @return The new java.util.Iterator
+     */
+    @Override
+    public java.util.Iterator<Forneymon> iterator () {
+        return new SequenceIterator();
+    }
+
+    /**
+     * Returns a Spliterator over the Forneymon that splits its range of indices in
+     * half, so that parallel streams divide the work evenly across threads.
+     * It binds to the collection on first use and is fail-fast after that.
+     * @return The new Spliterator
+     */
+    @Override
+    public Spliterator<Forneymon> spliterator () {
+        return new RangeSpliterator(0, -1, 0);
+    }
+
+    /**
+     * Clones a new ArrayForneymonagerie from the existing ArrayForneymonagerie
+     * @return The new ArrayForneymonagerie cloned as a deep copy from the existing ArrayForneymonagerie
+     */
+    @Override
+    public ArrayForneymonagerie clone () {
+        ArrayForneymonagerie clone = new ArrayForneymonagerie();
+
+        clone.collection = new Forneymon[collection.length];
+        for (int i = 0; i < size; i++) {
+            clone.collection[i] = collection[i].clone();
+        }
+        clone.typeIndex = new HashMap<String, Integer>(typeIndex);
+        clone.size = this.size;
+        clone.typeHash = this.typeHash;
+        clone.modCount = this.modCount;
+        return clone;
+    }
+
+    /**
+     * Checks if another ArrayForneymonagerie is equal to the current ArrayForneymonagerie
+     * @param other The other ArrayForneymonagerie which is being checked for equality with the
+     * current ArrayForneymonagerie
+     * @return Returns true if the two ArrayForneymonagerie hold equal Forneymon in the same order
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (!(other instanceof ArrayForneymonagerie)) {
+            return false;
+        }
+        ArrayForneymonagerie fmOther = (ArrayForneymonagerie) other;
+        if (this.size != fmOther.size || this.typeHash != fmOther.typeHash) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!collection[i].equals(fmOther.collection[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the set of types held, in O(1). Forneymon can change
+     * while collected, so their levels and health are left out; equal collections
+     * hold the same types, and so hash the same.
+     * @return The hash code of this ArrayForneymonagerie
+     */
+    @Override
+    public int hashCode () {
+        return typeHash;
+    }
+
+    @Override
+    public String toString () {
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = collection[i].toString();
+        }
+        return "[ " + String.join(", ", result) + " ]";
+    }
+
+
+    // Private helper methods
+    // -----------------------------------------------------------
+
+    /**
+     * Checks if a given index is invalid if
+     * - index < 0
+     * - index >= size
+     * @param index The index being checked for validity:
+     *  Must be less than the size and at least 0.
+     */
+    private void indexValidityCheck(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Doubles the capacity of the underlying array
+     */
+    private void grow () {
+        Forneymon[] grown = new Forneymon[collection.length * 2];
+        System.arraycopy(collection, 0, grown, 0, size);
+        collection = grown;
+    }
+
+    /**
+     * Moves the Forneymon in [from, to) so that they start at dest, recording
+     * each one's new index
+     * @param from The index of the first Forneymon being moved
+     * @param to The index just past the last Forneymon being moved
+     * @param dest The index the first Forneymon is moved to
+     */
+    private void shift (int from, int to, int dest) {
+        System.arraycopy(collection, from, collection, dest, to - from);
+        for (int i = dest; i < dest + to - from; i++) {
+            typeIndex.put(collection[i].getFMType(), i);
+        }
+    }
+
+
+    // Inner Classes
+    // -----------------------------------------------------------
+
+    public class Iterator {
+        private ArrayForneymonagerie host;
+        private int current;
+        private int itModCount;
+
+        Iterator (ArrayForneymonagerie host) {
+            this.host = host;
+            this.current = 0;
+            this.itModCount = host.modCount;
+        }
+
+        /**
+         * @return Returns true if the Iterator is valid
+         * and is at the last Forneymon in the collection, false otherwise.
+         */
+        public boolean atEnd () {
+            return isValid() && (current == host.size - 1);
+        }
+
+        /**
+         * @return Returns true if the Iterator is valid
+         * and is at the first Forneymon in the collection, false otherwise.
+         */
+        public boolean atStart () {
+            return isValid() && (current == 0);
+        }
+
+        /**
+         * @return Returns true if this Iterator's itModCount agrees with that of its owner's modCount
+         * and if the host ArrayForneymonagerie has at least one element, false otherwise.
+         */
+        public boolean isValid () {
+            return !host.empty() && (itModCount == host.modCount);
+        }
+
+        /**
+         * @return The Forneymon that the Iterator is currently pointing at
+         */
+        public Forneymon getCurrent () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            return host.collection[current];
+        }
+
+        /**
+         * Advances the Iterator to the next Forneymon in the sequence,
+         * wrapping around to the first after the last.
+         */
+        public void next () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            current = atEnd() ? 0 : current + 1;
+        }
+
+        /**
+         * Moves the Iterator to the previous Forneymon in the sequence,
+         * wrapping around to the last before the first.
+         */
+        public void prev () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            current = atStart() ? host.size - 1 : current - 1;
+        }
+
+        /**
+         * Removes the Forneymon this Iterator references from the ArrayForneymonagerie
+         * and moves the iterator to the Forneymon preceding the one it deleted.
+         * @return Returns a reference to the removed Forneymon
+         */
+        public Forneymon removeCurrent () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            var fm = host.remove(current);
+            current = (current == 0) ? host.size - 1 : current - 1;
+            itModCount = host.modCount;
+            return fm;
+        }
+
+    }
+
+    /**
+     * The java.util.Iterator behind iterator(), walking forward from index 0
+     */
+    private class SequenceIterator implements java.util.Iterator<Forneymon> {
+        private int next = 0, lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext () {
+            return next < size;
+        }
+
+        @Override
+        public Forneymon next () {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next++;
+            return collection[lastReturned];
+        }
+
+        /**
+         * Removes the Forneymon last returned by next
+         */
+        @Override
+        public void remove () {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            ArrayForneymonagerie.this.remove(lastReturned);
+            next = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * The Spliterator behind spliterator(), covering the indices [index, fence)
+     */
+    private class RangeSpliterator implements Spliterator<Forneymon> {
+        private int index, fence, expectedModCount;
+
+        /**
+         * @param fence The index just past the range, or -1 to bind to the whole
+         * collection on first use
+         */
+        RangeSpliterator (int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence () {
+            if (fence < 0) {
+                fence = size;
+                expectedModCount = modCount;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<Forneymon> trySplit () {
+            int lo = index, mid = (lo + getFence()) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            index = mid;
+            return new RangeSpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance (Consumer<? super Forneymon> action) {
+            if (index >= getFence()) {
+                return false;
+            }
+            action.accept(collection[index++]);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining (Consumer<? super Forneymon> action) {
+            var elements = collection;
+            for (int hi = getFence(); index < hi; index++) {
+                action.accept(elements[index]);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize () {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics () {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+}
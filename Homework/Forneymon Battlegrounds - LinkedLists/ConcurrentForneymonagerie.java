@@ -0,0 +1,500 @@
+package main.forneymon.arena;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import main.forneymon.fmtypes.*;
+
+/**
+ * A thread-safe collection of Forneymon, for rosters that several game
+ * server threads collect into and release from at once.
+ * <p>
+ * Every type hashes to one of a set of striped locks, and collect,
+ * releaseType and rearrange hold their type's stripe throughout, so two
+ * threads collecting the same type always end with one Forneymon of
+ * that type holding both sets of levels, while different types rarely
+ * contend. The type index is a ConcurrentHashMap, so containsType never
+ * blocks. The circular doubly linked list itself is guarded by a
+ * read-write lock that is only held for the O(1) link and unlink of a
+ * node, or for the walks that positional methods need.
+ * <p>
+ * Locks are always taken stripe first, then the list lock. Iterators,
+ * Spliterators and streams work on a snapshot of the collection taken
+ * when they are created, and never throw ConcurrentModificationException.
+ */
+public class ConcurrentForneymonagerie implements ForneymonagerieInterface {
+
+    private static final int STRIPES = 64;
+
+    // Fields
+    // -----------------------------------------------------------
+    private final Node sentinel;
+    private final ConcurrentHashMap<String, Node> typeIndex;
+    private final ReentrantLock[] stripes;
+    private final ReentrantReadWriteLock structure;
+    private final AtomicInteger size, modCount;
+    // The hashCode of the set of types held, kept as they come and go
+    private final AtomicInteger typeHash;
+
+
+    // Constructor
+    // -----------------------------------------------------------
+    public ConcurrentForneymonagerie () {
+        this.sentinel = new Node(null);
+        this.sentinel.next = this.sentinel;
+        this.sentinel.prev = this.sentinel;
+        this.typeIndex = new ConcurrentHashMap<String, Node>();
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.structure = new ReentrantReadWriteLock();
+        this.size = new AtomicInteger();
+        this.modCount = new AtomicInteger();
+        this.typeHash = new AtomicInteger();
+    }
+
+    // Methods
+    // -----------------------------------------------------------
+    /**
+     * Checks if the given ConcurrentForneymonagerie is empty
+     * @return Return if this ConcurrentForneymonagerie is empty
+     */
+    public boolean empty () {
+        return this.size.get() == 0;
+    }
+
+    /**
+     * @return Returns the number of Forneymon in the collection
+     */
+    public int size () {
+        return this.size.get();
+    }
+
+    /**
+     * @return Returns the number of structural changes and merges made so far
+     */
+    public int modCount () {
+        return this.modCount.get();
+    }
+
+    /**
+     * Returns true if toAdd was newly added to the ConcurrentForneymonagerie and
+     * false otherwise, in which case its levels are added to the Forneymon of its
+     * type already collected. Atomic with respect to every other call for the same type.
+     * @param toAdd is the Forneymon type the user wants to add to the ConcurrentForneymonagerie.
+     * @return if the given Forneymon is of a new type and added to the end of the ConcurrentForneymonagerie.
+     */
+    public boolean collect (Forneymon toAdd) {
+        var fmType = toAdd.getFMType();
+        var stripe = stripeOf(fmType);
+        stripe.lock();
+        try {
+            var existing = typeIndex.get(fmType);
+            if (existing != null) {
+                if (existing.fm != toAdd) {
+                    existing.fm.addLevels(toAdd.getLevel());
+                    modCount.incrementAndGet();
+                }
+                return false;
+            }
+            var added = new Node(toAdd);
+            structure.writeLock().lock();
+            try {
+                linkBefore(added, sentinel);
+                typeIndex.put(fmType, added);
+                typeHash.addAndGet(fmType.hashCode());
+                size.incrementAndGet();
+                modCount.incrementAndGet();
+            } finally {
+                structure.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Removes the Forneymon of the given subtype from the
+     * ConcurrentForneymonagerie and returns true. If the given fmType doesn't
+     * exist then returns false.
+     * @param fmType The type of Forneymon to be removed from the collection.
+     * @return Returns true if the given Forneymon is being released, false otherwise.
+     */
+    public boolean releaseType (String fmType) {
+        var stripe = stripeOf(fmType);
+        stripe.lock();
+        try {
+            var released = typeIndex.get(fmType);
+            if (released == null) {
+                return false;
+            }
+            release(released);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Returns the Forneymon at the given index in the ConcurrentForneymonagerie, if valid.
+     * @param index The index being checked for the Forneymon
+     * @return The Forneymon at the given index
+     */
+    public Forneymon get (int index) {
+        structure.readLock().lock();
+        try {
+            indexValidityCheck(index);
+            return nodeAt(index).fm;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the Fornyemon at the given index, if valid.
+     * @param index The index of the Forneymon to be removed.
+     * @return The Forneymon that was removed from the specified index.
+     */
+    public Forneymon remove (int index) {
+        while (true) {
+            // The type, and so the stripe to take, is only known once the node is found
+            var candidate = nodeAtOrNull(index);
+            if (candidate == null) {
+                throw new IllegalArgumentException();
+            }
+            var stripe = stripeOf(candidate.fm.getFMType());
+            stripe.lock();
+            try {
+                structure.writeLock().lock();
+                try {
+                    if (index < size.get() && nodeAt(index) == candidate) {
+                        typeIndex.remove(candidate.fm.getFMType());
+                        typeHash.addAndGet(-candidate.fm.getFMType().hashCode());
+                        unlink(candidate);
+                        size.decrementAndGet();
+                        modCount.incrementAndGet();
+                        return candidate.fm;
+                    }
+                } finally {
+                    structure.writeLock().unlock();
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a Forneymon with the given fmType. Returns -1 if
+     * the type isn't found.
+     * @param fmType The Forneymon type checking if found in the ConcurrentForneymonagerie
+     * @return The index where the Forneymon type is in the collection, or -1 if the
+     * Forneymon type isn't found.
+     */
+    public int getTypeIndex (String fmType) {
+        var found = typeIndex.get(fmType);
+        if (found == null) {
+            return -1;
+        }
+        structure.readLock().lock();
+        try {
+            if (!found.linked) {
+                return -1;
+            }
+            int index = 0;
+            for (Node n = found.prev; n != sentinel; n = n.prev) {
+                index++;
+            }
+            return index;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a given Forneymon exists within the ConcurrentForneymonagerie.
+     * @param toCheck is the Forneymon type, as a String, specified by the user.
+     * @return Returns true if the given Forneymon type is found within the ConcurrentForneymonagerie, false otherwise
+     */
+    public boolean containsType (String toCheck) {
+        return typeIndex.containsKey(toCheck);
+    }
+
+    /**
+     * Moves the Forneymon of the given type to the given index, shifting those
+     * in between over by one.
+     * @param fmType The type of Forneymon that is being rearranged.
+     * @param index The index where the Forneymon is being moved.
+     */
+    public void rearrange (String fmType, int index) {
+        var stripe = stripeOf(fmType);
+        stripe.lock();
+        try {
+            var toMove = typeIndex.get(fmType);
+            if (toMove == null) {
+                throw new IllegalArgumentException();
+            }
+            structure.writeLock().lock();
+            try {
+                indexValidityCheck(index);
+                unlink(toMove);
+                linkBefore(toMove, nodeAt(index));
+                modCount.incrementAndGet();
+            } finally {
+                structure.writeLock().unlock();
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Returns an Iterator over a snapshot of the Forneymon taken now; its remove
+     * releases the Forneymon last returned if it is still collected.
+     * @return The new java.util.Iterator
+     */
+    @Override
+    public java.util.Iterator<Forneymon> iterator () {
+        return new SnapshotIterator(snapshot());
+    }
+
+    /**
+     * @return A Spliterator over a snapshot of the Forneymon taken now, which splits evenly
+     */
+    @Override
+    public Spliterator<Forneymon> spliterator () {
+        var nodes = snapshot();
+        var fms = new Forneymon[nodes.size()];
+        for (int i = 0; i < fms.length; i++) {
+            fms[i] = nodes.get(i).fm;
+        }
+        return Spliterators.spliterator(fms, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Clones a new ConcurrentForneymonagerie from a snapshot of this one
+     * @return The new ConcurrentForneymonagerie cloned as a deep copy of this one
+     */
+    @Override
+    public ConcurrentForneymonagerie clone () {
+        ConcurrentForneymonagerie clone = new ConcurrentForneymonagerie();
+        for (Node n : snapshot()) {
+            clone.collect(n.fm.clone());
+        }
+        return clone;
+    }
+
+    /**
+     * Checks if another ConcurrentForneymonagerie holds equal Forneymon in the same
+     * order, comparing snapshots of the two once their sizes and hash codes match
+     * @param other The other ConcurrentForneymonagerie
+     * @return Returns true if the two ConcurrentForneymonagerie are equal
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ConcurrentForneymonagerie)) {
+            return false;
+        }
+        var fmOther = (ConcurrentForneymonagerie) other;
+        if (this.size.get() != fmOther.size.get() || this.typeHash.get() != fmOther.typeHash.get()) {
+            return false;
+        }
+        var mine = snapshot();
+        var theirs = fmOther.snapshot();
+        if (mine.size() != theirs.size()) {
+            return false;
+        }
+        for (int i = 0; i < mine.size(); i++) {
+            if (!mine.get(i).fm.equals(theirs.get(i).fm)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the set of types held, in O(1) and without locking.
+     * Forneymon can change while collected, so their levels and health are left out;
+     * equal collections hold the same types, and so hash the same.
+     * @return The hash code of this ConcurrentForneymonagerie
+     */
+    @Override
+    public int hashCode () {
+        return typeHash.get();
+    }
+
+    @Override
+    public String toString () {
+        var nodes = snapshot();
+        String[] result = new String[nodes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nodes.get(i).fm.toString();
+        }
+        return "[ " + String.join(", ", result) + " ]";
+    }
+
+
+    // Private helper methods
+    // -----------------------------------------------------------
+
+    /**
+     * Checks if a given index is invalid, with the list lock held
+     * @param index The index being checked for validity:
+     *  Must be less than the size and at least 0.
+     */
+    private void indexValidityCheck(int index) {
+        if (index < 0 || index >= size.get()) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private ReentrantLock stripeOf (String fmType) {
+        int hash = fmType.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Unlinks the given Node with its type's stripe held. The size and type index
+     * change under the list lock along with the links, so that a reader holding
+     * the read lock never sees a size that disagrees with the list.
+     * @param toRelease The Node of a collected type
+     */
+    private void release (Node toRelease) {
+        structure.writeLock().lock();
+        try {
+            unlink(toRelease);
+            typeIndex.remove(toRelease.fm.getFMType());
+            typeHash.addAndGet(-toRelease.fm.getFMType().hashCode());
+            size.decrementAndGet();
+            modCount.incrementAndGet();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The Node at the given index, walked to with the list lock held
+     */
+    private Node nodeAt (int index) {
+        Node current = sentinel.next;
+        while (index > 0) {
+            current = current.next;
+            index--;
+        }
+        return current;
+    }
+
+    /**
+     * @return The Node at the given index at the moment of the call, or null if the index is invalid
+     */
+    private Node nodeAtOrNull (int index) {
+        structure.readLock().lock();
+        try {
+            return (index < 0 || index >= size.get()) ? null : nodeAt(index);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    private void linkBefore (Node toAdd, Node at) {
+        toAdd.prev = at.prev;
+        toAdd.next = at;
+        at.prev.next = toAdd;
+        at.prev = toAdd;
+        toAdd.linked = true;
+    }
+
+    private void unlink (Node toRemove) {
+        toRemove.prev.next = toRemove.next;
+        toRemove.next.prev = toRemove.prev;
+        toRemove.linked = false;
+    }
+
+    /**
+     * @return The Nodes of the collection in order, as of one moment
+     */
+    private List<Node> snapshot () {
+        structure.readLock().lock();
+        try {
+            List<Node> nodes = new ArrayList<Node>(size.get());
+            for (Node n = sentinel.next; n != sentinel; n = n.next) {
+                nodes.add(n);
+            }
+            return nodes;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+
+    // Inner Classes
+    // -----------------------------------------------------------
+
+    private class SnapshotIterator implements java.util.Iterator<Forneymon> {
+        private final List<Node> nodes;
+        private int next;
+        private Node lastReturned;
+
+        SnapshotIterator (List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean hasNext () {
+            return next < nodes.size();
+        }
+
+        @Override
+        public Forneymon next () {
+            if (next >= nodes.size()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nodes.get(next++);
+            return lastReturned.fm;
+        }
+
+        /**
+         * Releases the Forneymon last returned by next, unless it has since been
+         * removed by another thread
+         */
+        @Override
+        public void remove () {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            var fmType = lastReturned.fm.getFMType();
+            var stripe = stripeOf(fmType);
+            stripe.lock();
+            try {
+                if (typeIndex.get(fmType) == lastReturned) {
+                    release(lastReturned);
+                }
+            } finally {
+                stripe.unlock();
+            }
+            lastReturned = null;
+        }
+    }
+
+    private static class Node {
+        Node next, prev;
+        final Forneymon fm;
+        boolean linked;
+
+        Node (Forneymon fm) {
+            this.fm = fm;
+        }
+    }
+
+}
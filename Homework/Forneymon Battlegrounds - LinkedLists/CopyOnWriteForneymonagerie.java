@@ -0,0 +1,472 @@
+package main.forneymon.arena;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+import main.forneymon.fmtypes.*;
+
+/**
+ * Collections of Forneymon whose clone is O(1), for rosters snapshotted
+ * far more often than the snapshots are changed, such as one per match
+ * replay.
+ * <p>
+ * A clone shares its original's storage: the array of Forneymon and the
+ * type index. Whichever of the two first changes its structure copies
+ * the array and index then, so structural copying happens at most once
+ * per clone. The Forneymon are deep-copied more lazily still, one at a
+ * time: after a clone, neither collection owns any of the Forneymon it
+ * shares, and each one is cloned the first time either collection hands
+ * it out through get, remove or an iterator, or merges levels into it
+ * through collect. Read-only methods such as size, getTypeIndex, equals
+ * and toString copy nothing.
+ * <p>
+ * Forneymon changed through references taken before a clone, rather
+ * than through the collection, are seen by both collections until each
+ * has copied them.
+ */
+public class CopyOnWriteForneymonagerie implements ForneymonagerieInterface {
+
+    private static final int START_CAPACITY = 8;
+
+    // Fields
+    // -----------------------------------------------------------
+    private Storage storage;
+    private int modCount;
+
+
+    // Constructor
+    // -----------------------------------------------------------
+    public CopyOnWriteForneymonagerie () {
+        this.storage = new Storage(START_CAPACITY);
+        this.modCount = 0;
+    }
+
+    // Methods
+    // -----------------------------------------------------------
+    /**
+     * Checks if the given CopyOnWriteForneymonagerie is empty
+     * @return Return if this CopyOnWriteForneymonagerie is empty
+     */
+    public boolean empty () {
+        return storage.size == 0;
+    }
+
+    /**
+     * @return Returns the number of Forneymon in the collection
+     */
+    public int size () {
+        return storage.size;
+    }
+
+    /**
+     * Returns true if toAdd was newly added to the CopyOnWriteForneymonagerie and
+     * false otherwise, in which case its levels are added to this collection's own
+     * copy of the Forneymon of its type.
+     * @param toAdd is the Forneymon type the user wants to add to the CopyOnWriteForneymonagerie.
+     * @return if the given Forneymon is of a new type and added to the end of the CopyOnWriteForneymonagerie.
+     */
+    public boolean collect (Forneymon toAdd) {
+        var existing = storage.typeIndex.get(toAdd.getFMType());
+
+        if (existing != null) {
+            if (storage.elements[existing] != toAdd) {
+                owned(existing).addLevels(toAdd.getLevel());
+                modCount++;
+            }
+            return false;
+        }
+        var s = writable();
+        if (s.size == s.elements.length) {
+            s.grow();
+        }
+        s.elements[s.size] = toAdd;
+        s.ownedGeneration[s.size] = s.generation;
+        s.typeIndex.put(toAdd.getFMType(), s.size);
+        s.typeHash += toAdd.getFMType().hashCode();
+        s.size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the Forneymon of the given subtype from the
+     * CopyOnWriteForneymonagerie and returns true. If the given fmType doesn't
+     * exist then returns false.
+     * @param fmType The type of Forneymon to be removed from the collection.
+     * @return Returns true if the given Forneymon is being released, false otherwise.
+     */
+    public boolean releaseType (String fmType) {
+        var index = storage.typeIndex.get(fmType);
+        if (index == null) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Returns the Forneymon at the given index in the CopyOnWriteForneymonagerie, if valid,
+     * copying it first if it is still shared with a clone.
+     * @param index The index being checked for the Forneymon
+     * @return The Forneymon at the given index
+     */
+    public Forneymon get (int index) {
+        indexValidityCheck(index);
+        return owned(index);
+    }
+
+    /**
+     * Removes and returns the Fornyemon at the given index, if valid.
+     * @param index The index of the Forneymon to be removed.
+     * @return The Forneymon that was removed from the specified index.
+     */
+    public Forneymon remove (int index) {
+        indexValidityCheck(index);
+        var removed = owned(index);
+        removeAt(index);
+        return removed;
+    }
+
+    /**
+     * Returns the index of a Forneymon with the given fmType. Returns -1 if
+     * the type isn't found.
+     * @param fmType The Forneymon type checking if found in the CopyOnWriteForneymonagerie
+     * @return The index where the Forneymon type is in the collection, or -1 if the
+     * Forneymon type isn't found.
+     */
+    public int getTypeIndex (String fmType) {
+        return storage.typeIndex.getOrDefault(fmType, -1);
+    }
+
+    /**
+     * Checks if a given Forneymon exists within the CopyOnWriteForneymonagerie.
+     * @param toCheck is the Forneymon type, as a String, specified by the user.
+     * @return Returns true if the given Forneymon type is found within the CopyOnWriteForneymonagerie, false otherwise
+     */
+    public boolean containsType (String toCheck) {
+        return storage.typeIndex.containsKey(toCheck);
+    }
+
+    /**
+     * Trades the contents of this CopyOnWriteForneymonagerie and another CopyOnWriteForneymonagerie
+     * @param other The CopyOnWriteForneymonagerie whose Forneymon are swapped with this one's
+     */
+    public void trade (CopyOnWriteForneymonagerie other) {
+        var storage = this.storage;
+        this.storage = other.storage;
+        other.storage = storage;
+
+        this.modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Moves the Forneymon of the given type to the given index, shifting those
+     * in between over by one.
+     * @param fmType The type of Forneymon that is being rearranged.
+     * @param index The index where the Forneymon is being moved.
+     */
+    public void rearrange (String fmType, int index) {
+        indexValidityCheck(index);
+        var from = storage.typeIndex.get(fmType);
+        if (from == null) {
+            throw new IllegalArgumentException();
+        }
+
+        var s = writable();
+        var toMove = s.elements[from];
+        var toMoveGeneration = s.ownedGeneration[from];
+        if (from < index) {
+            s.shift(from + 1, index + 1, from);
+        } else {
+            s.shift(index, from, index + 1);
+        }
+        s.elements[index] = toMove;
+        s.ownedGeneration[index] = toMoveGeneration;
+        s.typeIndex.put(fmType, index);
+        modCount++;
+    }
+
+    /**
+     * Releases the Forneymon of each of the given types in one pass over the
+     * array, rather than one shift per type.
+     * @param fmTypes The types of Forneymon to release
+     * @return The number of Forneymon released
+     */
+    @Override
+    public int releaseTypes (Set<String> fmTypes) {
+        return retainIf(fm -> !fmTypes.contains(fm.getFMType()));
+    }
+
+    /**
+     * Releases every Forneymon that fails the given test in one pass, sliding
+     * those kept down over the gaps. The test is given the Forneymon without
+     * copying them, so it must not change them; every one is tested before any
+     * is released, so a test that throws leaves the collection unchanged.
+     * @param keep The test each Forneymon kept must pass
+     * @return The number of Forneymon released
+     */
+    @Override
+    public int retainIf (Predicate<? super Forneymon> keep) {
+        var doomed = new BitSet(storage.size);
+        for (int i = 0; i < storage.size; i++) {
+            if (!keep.test(storage.elements[i])) {
+                doomed.set(i);
+            }
+        }
+        if (doomed.isEmpty()) {
+            return 0;
+        }
+
+        var s = writable();
+        int kept = doomed.nextSetBit(0);
+        for (int i = kept; i < s.size; i++) {
+            var fm = s.elements[i];
+            if (doomed.get(i)) {
+                s.typeIndex.remove(fm.getFMType());
+                s.typeHash -= fm.getFMType().hashCode();
+            } else {
+                s.elements[kept] = fm;
+                s.ownedGeneration[kept] = s.ownedGeneration[i];
+                s.typeIndex.put(fm.getFMType(), kept++);
+            }
+        }
+        int released = s.size - kept;
+        Arrays.fill(s.elements, kept, s.size, null);
+        s.size = kept;
+        modCount++;
+        return released;
+    }
+
+    /**
+     * Returns a fail-fast java.util.Iterator over the Forneymon from first to last,
+     * copying each one still shared with a clone as it is reached.
+     * @return The new java.util.Iterator
+     */
+    @Override
+    public java.util.Iterator<Forneymon> iterator () {
+        return new SequenceIterator();
+    }
+
+    /**
+     * Clones a new CopyOnWriteForneymonagerie from the existing one in O(1): the two
+     * share their storage until either changes, and copy each Forneymon only once
+     * it is handed out or changed.
+     * @return The new CopyOnWriteForneymonagerie, equal to this one
+     */
+    @Override
+    public CopyOnWriteForneymonagerie clone () {
+        CopyOnWriteForneymonagerie clone = new CopyOnWriteForneymonagerie();
+
+        // Neither side owns the Forneymon they now share
+        storage.generation++;
+        storage.sharers++;
+        clone.storage = this.storage;
+        clone.modCount = this.modCount;
+        return clone;
+    }
+
+    /**
+     * Checks if another CopyOnWriteForneymonagerie is equal to the current one
+     * @param other The other CopyOnWriteForneymonagerie which is being checked for equality
+     * @return Returns true if the two CopyOnWriteForneymonagerie hold equal Forneymon in the same order
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (!(other instanceof CopyOnWriteForneymonagerie)) {
+            return false;
+        }
+        var mine = this.storage;
+        var theirs = ((CopyOnWriteForneymonagerie) other).storage;
+        if (mine == theirs) {
+            return true;
+        }
+        if (mine.size != theirs.size || mine.typeHash != theirs.typeHash) {
+            return false;
+        }
+        for (int i = 0; i < mine.size; i++) {
+            if (!mine.elements[i].equals(theirs.elements[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the set of types held, in O(1). Forneymon can change
+     * while collected, so their levels and health are left out; equal collections
+     * hold the same types, and so hash the same.
+     * @return The hash code of this CopyOnWriteForneymonagerie
+     */
+    @Override
+    public int hashCode () {
+        return storage.typeHash;
+    }
+
+    @Override
+    public String toString () {
+        String[] result = new String[storage.size];
+        for (int i = 0; i < storage.size; i++) {
+            result[i] = storage.elements[i].toString();
+        }
+        return "[ " + String.join(", ", result) + " ]";
+    }
+
+
+    // Private helper methods
+    // -----------------------------------------------------------
+
+    /**
+     * Checks if a given index is invalid if
+     * - index < 0
+     * - index >= size
+     * @param index The index being checked for validity:
+     *  Must be less than the size and at least 0.
+     */
+    private void indexValidityCheck(int index) {
+        if (index < 0 || index >= storage.size) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * @return This collection's storage, copied first if it is shared with a clone
+     */
+    private Storage writable () {
+        if (storage.sharers > 1) {
+            storage.sharers--;
+            storage = new Storage(storage);
+        }
+        return storage;
+    }
+
+    /**
+     * @return The Forneymon at the given valid index, copied first if this collection
+     * does not yet own it
+     */
+    private Forneymon owned (int index) {
+        var s = storage;
+        if (s.ownedGeneration[index] != s.generation) {
+            s = writable();
+            s.elements[index] = s.elements[index].clone();
+            s.ownedGeneration[index] = s.generation;
+        }
+        return s.elements[index];
+    }
+
+    private void removeAt (int index) {
+        var s = writable();
+        s.typeIndex.remove(s.elements[index].getFMType());
+        s.typeHash -= s.elements[index].getFMType().hashCode();
+        s.shift(index + 1, s.size, index);
+        s.size--;
+        s.elements[s.size] = null;
+        modCount++;
+    }
+
+
+    // Inner Classes
+    // -----------------------------------------------------------
+
+    /**
+     * The array of Forneymon and type index behind one or more collections.
+     * A Forneymon is owned by the collection using this Storage, and so safe
+     * to hand out, while its ownedGeneration matches generation; a clone
+     * bumps generation, so every Forneymon shared at that moment becomes
+     * unowned on both sides.
+     */
+    private static class Storage {
+        Forneymon[] elements;
+        int[] ownedGeneration;
+        Map<String, Integer> typeIndex;
+        int size, generation, sharers;
+        // The hashCode of the set of types held
+        int typeHash;
+
+        Storage (int capacity) {
+            this.elements = new Forneymon[capacity];
+            this.ownedGeneration = new int[capacity];
+            this.typeIndex = new HashMap<String, Integer>();
+            this.generation = 1;
+            this.sharers = 1;
+        }
+
+        /**
+         * A private copy of the given shared Storage, owning none of its Forneymon
+         */
+        Storage (Storage shared) {
+            this.elements = Arrays.copyOf(shared.elements, Math.max(shared.elements.length, START_CAPACITY));
+            this.ownedGeneration = new int[this.elements.length];
+            this.typeIndex = new HashMap<String, Integer>(shared.typeIndex);
+            this.size = shared.size;
+            this.typeHash = shared.typeHash;
+            this.generation = 1;
+            this.sharers = 1;
+        }
+
+        void grow () {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+            ownedGeneration = Arrays.copyOf(ownedGeneration, elements.length);
+        }
+
+        /**
+         * Moves the Forneymon in [from, to) so that they start at dest, recording
+         * each one's new index
+         */
+        void shift (int from, int to, int dest) {
+            System.arraycopy(elements, from, elements, dest, to - from);
+            System.arraycopy(ownedGeneration, from, ownedGeneration, dest, to - from);
+            for (int i = dest; i < dest + to - from; i++) {
+                typeIndex.put(elements[i].getFMType(), i);
+            }
+        }
+    }
+
+    /**
+     * The java.util.Iterator behind iterator(), walking forward from index 0
+     */
+    private class SequenceIterator implements java.util.Iterator<Forneymon> {
+        private int next = 0, lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext () {
+            return next < storage.size;
+        }
+
+        @Override
+        public Forneymon next () {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= storage.size) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next++;
+            return owned(lastReturned);
+        }
+
+        /**
+         * Removes the Forneymon last returned by next
+         */
+        @Override
+        public void remove () {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastReturned);
+            next = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+}
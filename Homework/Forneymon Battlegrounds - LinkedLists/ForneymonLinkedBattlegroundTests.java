@@ -1,5 +1,14 @@
 package test.forneymon.arena;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+
 import main.forneymon.arena.*;
 import main.forneymon.fmtypes.*;
 
@@ -274,7 +283,336 @@ public class ForneymonLinkedBattlegroundTests {
         assertEquals(2, fm1.size());
         assertFalse(fm1.containsType("Burnymon"));
     }
-    
+    @Test
+    public void testTypeIndex_t0() {
+        fm1.collect(new Dampymon(1));
+        fm1.collect(new Burnymon(1));
+        fm1.collect(new Leafymon(1));
+        fm1.rearrange("Leafymon", 0);
+        fm1.releaseType("Dampymon");
+        assertEquals(0, fm1.getTypeIndex("Leafymon"));
+        assertEquals(1, fm1.getTypeIndex("Burnymon"));
+        assertEquals(-1, fm1.getTypeIndex("Dampymon"));
+        assertTrue(fm1.collect(new Dampymon(2)));
+        assertFalse(fm1.collect(new Burnymon(2)));
+        assertEquals(3, fm1.get(1).getLevel());
+        assertEquals(2, fm1.getTypeIndex("Dampymon"));
+
+        LinkedForneymonagerie fm2 = new LinkedForneymonagerie();
+        fm2.collect(new Zappymon(1));
+        fm1.trade(fm2);
+        assertTrue(fm1.containsType("Zappymon"));
+        assertFalse(fm1.containsType("Leafymon"));
+        assertEquals(2, fm2.getTypeIndex("Dampymon"));
+    }
+    @Test
+    public void testPrepend_t0() {
+        fm1.collect(new Dampymon(1));
+        assertTrue(fm1.prepend(new Burnymon(1)));
+        assertEquals(2, fm1.size());
+        assertEquals(0, fm1.getTypeIndex("Burnymon"));
+        assertEquals(1, fm1.getTypeIndex("Dampymon"));
+        assertFalse(fm1.prepend(new Dampymon(2)));
+        assertEquals(2, fm1.size());
+        assertEquals(3, fm1.get(1).getLevel());
+        assertEquals(1, fm1.getTypeIndex("Dampymon"));
+        try {
+            for (Forneymon fm : fm1) {
+                fm1.prepend(new Leafymon(1));
+            }
+            fail();
+        } catch (Exception e) {
+            if (! (e instanceof java.util.ConcurrentModificationException)) {
+                fail();
+            }
+        }
+    }
+    @Test
+    public void testArrayForneymonagerie_t0() {
+        ArrayForneymonagerie fm2 = new ArrayForneymonagerie();
+        for (int i = 0; i < 3; i++) {
+            fm2.collect(new Dampymon(1));
+            fm2.collect(new Burnymon(1));
+            fm2.collect(new Leafymon(1));
+        }
+        assertEquals(3, fm2.size());
+        assertEquals(3, fm2.get(1).getLevel());
+        fm2.rearrange("Leafymon", 0);
+        assertEquals("Leafymon", fm2.get(0).getFMType());
+        assertEquals(2, fm2.getTypeIndex("Burnymon"));
+        assertTrue(fm2.releaseType("Dampymon"));
+        assertEquals(1, fm2.getTypeIndex("Burnymon"));
+        assertEquals(-1, fm2.getTypeIndex("Dampymon"));
+        try {
+            fm2.get(2);
+            fail();
+        } catch (Exception e) {
+            if (! (e instanceof IllegalArgumentException)) {
+                fail();
+            }
+        }
+    }
+    @Test
+    public void testArrayForneymonagerie_t1() {
+        ArrayForneymonagerie fm2 = new ArrayForneymonagerie();
+        fm2.collect(new Dampymon(1));
+        fm2.collect(new Burnymon(1));
+        fm2.collect(new Leafymon(1));
+        ArrayForneymonagerie.Iterator it = fm2.getIterator();
+        it.prev();
+        assertEquals("Leafymon", it.getCurrent().getFMType());
+        it.next();
+        it.removeCurrent();
+        assertEquals("Leafymon", it.getCurrent().getFMType());
+        assertEquals(2, fm2.size());
+        ArrayForneymonagerie fm3 = fm2.clone();
+        assertEquals(fm2, fm3);
+        fm3.collect(new Leafymon(1));
+        assertNotEquals(fm2, fm3);
+        fm2.collect(new Zappymon(1));
+        assertFalse(it.isValid());
+    }
+    @Test
+    public void testTreeForneymonagerie_t0() {
+        TreeForneymonagerie fm2 = new TreeForneymonagerie();
+        fm2.collect(new Dampymon(1));
+        fm2.collect(new Burnymon(1));
+        fm2.collect(new Leafymon(1));
+        fm2.collect(new Zappymon(1));
+        fm2.rearrange("Dampymon", 3);
+        fm2.rearrange("Zappymon", 0);
+        assertEquals("Burnymon", fm2.get(1).getFMType());
+        assertEquals("Leafymon", fm2.get(2).getFMType());
+        assertEquals(0, fm2.getTypeIndex("Zappymon"));
+        assertEquals(3, fm2.getTypeIndex("Dampymon"));
+        assertEquals("Leafymon", fm2.remove(2).getFMType());
+        assertEquals(2, fm2.getTypeIndex("Dampymon"));
+        assertFalse(fm2.collect(new Zappymon(2)));
+        assertEquals(3, fm2.get(0).getLevel());
+
+        TreeForneymonagerie.Iterator it = fm2.getIterator();
+        it.prev();
+        assertEquals("Dampymon", it.getCurrent().getFMType());
+        it.removeCurrent();
+        assertEquals("Burnymon", it.getCurrent().getFMType());
+        assertTrue(it.atEnd());
+        assertEquals(2, fm2.size());
+    }
+    @Test
+    public void testIterable_t0() {
+        fm1.collect(new Dampymon(1));
+        fm1.collect(new Burnymon(2));
+        fm1.collect(new Leafymon(3));
+        int levels = 0;
+        for (Forneymon fm : fm1) {
+            levels += fm.getLevel();
+        }
+        assertEquals(6, levels);
+        assertEquals(5, fm1.stream().filter(fm -> fm.getLevel() > 1).mapToInt(Forneymon::getLevel).sum());
+
+        java.util.Iterator<Forneymon> it = fm1.iterator();
+        it.next();
+        it.next();
+        it.remove();
+        assertEquals("Leafymon", it.next().getFMType());
+        assertFalse(it.hasNext());
+        assertFalse(fm1.containsType("Burnymon"));
+        assertEquals(1, fm1.getTypeIndex("Leafymon"));
+        try {
+            for (Forneymon fm : fm1) {
+                fm1.releaseType("Leafymon");
+            }
+            fail();
+        } catch (Exception e) {
+            if (! (e instanceof java.util.ConcurrentModificationException)) {
+                fail();
+            }
+        }
+    }
+    @Test
+    public void testParallelStream_t0() {
+        ArrayForneymonagerie fm2 = new ArrayForneymonagerie();
+        TreeForneymonagerie fm3 = new TreeForneymonagerie();
+        ForneymonagerieInterface[] rosters = { fm1, fm2, fm3 };
+        for (ForneymonagerieInterface roster : rosters) {
+            roster.collect(new Dampymon(1));
+            roster.collect(new Burnymon(2));
+            roster.collect(new Leafymon(3));
+            roster.collect(new Zappymon(4));
+            assertEquals(10, roster.parallelStream().mapToInt(Forneymon::getLevel).sum());
+            assertEquals("Dampymon,Burnymon,Leafymon,Zappymon",
+                roster.parallelStream().map(Forneymon::getFMType).collect(java.util.stream.Collectors.joining(",")));
+        }
+        java.util.Spliterator<Forneymon> back = fm3.spliterator();
+        java.util.Spliterator<Forneymon> front = back.trySplit();
+        assertNotNull(front);
+        assertTrue(front.estimateSize() > 0 && back.estimateSize() > 0);
+        StringBuilder order = new StringBuilder();
+        front.forEachRemaining(fm -> order.append(fm.getFMType()).append(","));
+        back.forEachRemaining(fm -> order.append(fm.getFMType()).append(","));
+        assertEquals("Dampymon,Burnymon,Leafymon,Zappymon,", order.toString());
+    }
+    @Test
+    public void testConcurrentForneymonagerie_t0() throws InterruptedException {
+        ConcurrentForneymonagerie fm2 = new ConcurrentForneymonagerie();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 250; j++) {
+                    fm2.collect(new Dampymon(1));
+                    fm2.collect(new Burnymon(1));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(2, fm2.size());
+        assertEquals(1000, fm2.get(fm2.getTypeIndex("Dampymon")).getLevel());
+        assertEquals(1000, fm2.get(fm2.getTypeIndex("Burnymon")).getLevel());
+        assertTrue(fm2.releaseType("Dampymon"));
+        assertEquals(0, fm2.getTypeIndex("Burnymon"));
+        assertFalse(fm2.containsType("Dampymon"));
+    }
+    @Test
+    public void testConcurrentForneymonagerie_t1() throws InterruptedException {
+        ConcurrentForneymonagerie fm2 = new ConcurrentForneymonagerie();
+        java.util.concurrent.atomic.AtomicBoolean broken = new java.util.concurrent.atomic.AtomicBoolean();
+        Thread releaser = new Thread(() -> {
+            for (int j = 0; j < 5000; j++) {
+                fm2.collect(new Dampymon(1));
+                fm2.collect(new Burnymon(1));
+                fm2.releaseType("Dampymon");
+                fm2.releaseType("Burnymon");
+            }
+        });
+        Thread reader = new Thread(() -> {
+            for (int j = 0; j < 5000; j++) {
+                try {
+                    if (fm2.get(fm2.size() - 1) == null) {
+                        broken.set(true);
+                    }
+                    if (j % 2 == 0 && fm2.remove(fm2.size() - 1) == null) {
+                        broken.set(true);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Emptied by the releaser in between
+                } catch (RuntimeException e) {
+                    broken.set(true);
+                }
+            }
+        });
+        releaser.start();
+        reader.start();
+        releaser.join();
+        reader.join();
+        assertFalse(broken.get());
+        assertEquals(0, fm2.size());
+        assertEquals(0, fm2.hashCode());
+    }
+    @Test
+    public void testCopyOnWriteForneymonagerie_t0() {
+        CopyOnWriteForneymonagerie fm2 = new CopyOnWriteForneymonagerie();
+        fm2.collect(new Dampymon(1));
+        fm2.collect(new Burnymon(1));
+        CopyOnWriteForneymonagerie dolly = fm2.clone();
+        assertEquals(fm2, dolly);
+        fm2.get(0).takeDamage(1, DamageType.BASIC);
+        dolly.collect(new Burnymon(2));
+        dolly.collect(new Leafymon(1));
+        assertEquals(Dampymon.START_HEALTH - 1, fm2.get(0).getHealth());
+        assertEquals(Dampymon.START_HEALTH, dolly.get(0).getHealth());
+        assertEquals(1, fm2.get(1).getLevel());
+        assertEquals(3, dolly.get(1).getLevel());
+        assertEquals(2, fm2.size());
+        assertEquals(3, dolly.size());
+    }
+    @Test
+    public void testBulkOperations_t0() {
+        assertEquals(3, fm1.collectAll(Arrays.asList(new Dampymon(1), new Burnymon(1), new Leafymon(1), new Dampymon(1))));
+        LinkedForneymonagerie fm2 = new LinkedForneymonagerie();
+        fm2.collect(new Burnymon(2));
+        fm2.collect(new Zappymon(1));
+        assertEquals(1, fm1.mergeFrom(fm2));
+        assertEquals(4, fm1.size());
+        assertEquals(3, fm1.get(1).getLevel());
+        assertEquals(2, fm2.size());
+        assertEquals(2, fm1.releaseTypes(new HashSet<>(Arrays.asList("Leafymon", "Zappymon", "Ghostymon"))));
+        assertEquals(1, fm1.retainIf(fm -> fm.getLevel() > 2));
+        assertEquals(1, fm1.size());
+        assertEquals(0, fm1.getTypeIndex("Burnymon"));
+    }
+    @Test
+    public void testCodec_t0() throws IOException {
+        fm1.collect(new Dampymon(1));
+        fm1.collect(new Burnymon(300));
+        fm1.collect(new Zappymon(2));
+        fm1.get(1).takeDamage(4, DamageType.BASIC);
+        ForneymonagerieCodec codec = new ForneymonagerieCodec();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel out = Channels.newChannel(bytes);
+        long written = codec.write(fm1, out);
+        assertEquals(bytes.size(), written);
+        String first = fm1.toString();
+        fm1.rearrange("Zappymon", 0);
+        codec.write(fm1, Channels.newChannel(new ByteArrayOutputStream()));
+        assertEquals(written, codec.write(fm1, out));
+
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        ArrayForneymonagerie fm2 = new ArrayForneymonagerie();
+        assertEquals(3, codec.read(in, fm2));
+        assertEquals(first, fm2.toString());
+        LinkedForneymonagerie fm3 = new LinkedForneymonagerie();
+        assertEquals(3, codec.read(in, fm3));
+        assertEquals(fm1, fm3);
+    }
+    @Test
+    public void testCodec_t1() throws IOException {
+        fm1.collect(new Dampymon(1));
+        ForneymonagerieCodec codec = new ForneymonagerieCodec();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(fm1, Channels.newChannel(bytes));
+        byte[] roster = bytes.toByteArray();
+        byte[] header = Arrays.copyOf(roster, 5);
+        byte[] hugeId = Arrays.copyOf(header, 10);
+        hugeId[5] = hugeId[6] = hugeId[7] = hugeId[8] = (byte) 0xFF;
+        hugeId[9] = 0x0F;
+        byte[] badLevel = roster.clone();
+        badLevel[16] = 1;
+        for (byte[] corrupt : new byte[][] { hugeId, badLevel }) {
+            try {
+                new ForneymonagerieCodec().read(Channels.newChannel(new ByteArrayInputStream(corrupt)), new LinkedForneymonagerie());
+                fail();
+            } catch (Exception e) {
+                if (! (e instanceof java.io.StreamCorruptedException)) {
+                    fail();
+                }
+            }
+        }
+    }
+    @Test
+    public void testHashCode_t0() {
+        fm1.collect(new Dampymon(1));
+        fm1.collect(new Burnymon(1));
+        LinkedForneymonagerie fm2 = new LinkedForneymonagerie();
+        fm2.collect(new Dampymon(1));
+        fm2.collect(new Burnymon(1));
+        assertEquals(fm1, fm2);
+        assertEquals(fm1.hashCode(), fm2.hashCode());
+
+        int hash = fm1.hashCode();
+        fm1.get(0).takeDamage(1, DamageType.BASIC);
+        assertEquals(hash, fm1.hashCode());
+        assertNotEquals(fm1, fm2);
+
+        fm2.collect(new Leafymon(1));
+        assertNotEquals(fm2, fm1);
+        fm2.releaseType("Leafymon");
+        assertEquals(hash, fm2.hashCode());
+        assertFalse(fm1.equals("Dampymon"));
+    }
+
     // Grading tests HW1
     
     @Test
@@ -425,7 +763,6 @@ public class ForneymonLinkedBattlegroundTests {
         System.out.println(fm1);
         System.out.println(fm1.get(0));
         System.out.println(fm1.get(1));
-        System.out.println(fm1.get(2));
         
         try {
             fm1.get(2);
@@ -0,0 +1,171 @@
+package bench.forneymon.arena;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import main.forneymon.arena.*;
+import main.forneymon.fmtypes.*;
+
+/**
+ * Benchmarks of roster-wide analytics over large Forneymonagerie, comparing
+ * a walk with each implementation's own wrap-around Iterator against
+ * sequential and parallel streams over its Spliterator. Plain Java, so it
+ * runs wherever the sources compile:
+ * <pre>
+ *   java bench.forneymon.arena.ForneymonagerieBenchmark [rosterSize ...]
+ * </pre>
+ * Each analytic is run WARMUP times, then timed over MEASURED runs, and the
+ * mean time per run is printed. Run it on a multi-core machine. Parallel
+ * times against stream times give the speedup, and iterator times show what
+ * the arena code does today.
+ */
+public class ForneymonagerieBenchmark {
+
+    // -----------------------------------------------------------
+    // Parameters
+    // -----------------------------------------------------------
+    private static final String[] IMPLS = { "linked", "array", "tree" };
+    private static final int[] ROSTER_SIZES = { 100000, 1000000 };
+    private static final int WARMUP = 5, MEASURED = 10;
+    private static final int HEALTHY = 10;
+
+    // Results are folded in here so that no run can be optimized away
+    private static long sink;
+
+    // -----------------------------------------------------------
+    // Benchmarks
+    // -----------------------------------------------------------
+    public static void main (String[] args) {
+        int[] sizes = args.length == 0 ? ROSTER_SIZES : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.printf("%-7s %8s  %-21s %9s%n", "impl", "size", "analytic", "ms/run");
+        for (int size : sizes) {
+            for (String impl : IMPLS) {
+                ForneymonagerieInterface roster = build(impl, size);
+                for (Map.Entry<String, ToLongFunction<ForneymonagerieInterface>> analytic : analytics().entrySet()) {
+                    System.out.printf("%-7s %8d  %-21s %9.3f%n", impl, size, analytic.getKey(),
+                            time(analytic.getValue(), roster) / 1e6);
+                }
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * @return Each analytic by name, returning a number that depends on its whole result
+     */
+    static Map<String, ToLongFunction<ForneymonagerieInterface>> analytics () {
+        Map<String, ToLongFunction<ForneymonagerieInterface>> analytics = new LinkedHashMap<>();
+        analytics.put("levelSumIterator", ForneymonagerieBenchmark::levelSumIterator);
+        analytics.put("levelSumStream", roster -> roster.stream().mapToLong(Forneymon::getLevel).sum());
+        analytics.put("levelSumParallel", roster -> roster.parallelStream().mapToLong(Forneymon::getLevel).sum());
+        analytics.put("typeCountsStream", roster -> roster.stream()
+                .collect(Collectors.groupingBy(Forneymon::getDamageType, Collectors.counting())).hashCode());
+        analytics.put("typeCountsParallel", roster -> roster.parallelStream()
+                .collect(Collectors.groupingByConcurrent(Forneymon::getDamageType, Collectors.counting())).hashCode());
+        analytics.put("healthyCountStream", roster -> roster.stream().filter(fm -> fm.getHealth() > HEALTHY).count());
+        analytics.put("healthyCountParallel", roster -> roster.parallelStream().filter(fm -> fm.getHealth() > HEALTHY).count());
+        return analytics;
+    }
+
+    static long levelSumIterator (ForneymonagerieInterface roster) {
+        long sum = 0;
+        int size = roster.size();
+        if (roster instanceof LinkedForneymonagerie) {
+            LinkedForneymonagerie.Iterator it = ((LinkedForneymonagerie) roster).getIterator();
+            for (int i = 0; i < size; i++, it.next()) {
+                sum += it.getCurrent().getLevel();
+            }
+        } else if (roster instanceof ArrayForneymonagerie) {
+            ArrayForneymonagerie.Iterator it = ((ArrayForneymonagerie) roster).getIterator();
+            for (int i = 0; i < size; i++, it.next()) {
+                sum += it.getCurrent().getLevel();
+            }
+        } else {
+            TreeForneymonagerie.Iterator it = ((TreeForneymonagerie) roster).getIterator();
+            for (int i = 0; i < size; i++, it.next()) {
+                sum += it.getCurrent().getLevel();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The mean nanoseconds per run of the analytic over the roster, once warmed up
+     */
+    static long time (ToLongFunction<ForneymonagerieInterface> analytic, ForneymonagerieInterface roster) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink ^= analytic.applyAsLong(roster);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            sink ^= analytic.applyAsLong(roster);
+        }
+        return (System.nanoTime() - started) / MEASURED;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Builds the named Forneymonagerie holding size Forneymon, each of its own
+     * type so that none are merged by collect, with a spread of levels and
+     * damage types and some having taken damage.
+     */
+    static ForneymonagerieInterface build (String impl, int size) {
+        ForneymonagerieInterface roster;
+        switch (impl) {
+            case "linked":
+                roster = new LinkedForneymonagerie();
+                break;
+            case "array":
+                roster = new ArrayForneymonagerie();
+                break;
+            case "tree":
+                roster = new TreeForneymonagerie();
+                break;
+            default:
+                throw new IllegalArgumentException(impl);
+        }
+        for (int i = 0; i < size; i++) {
+            Forneymon fm = rostermon(i);
+            if (i % 3 == 0) {
+                fm.takeDamage(i % 7, DamageType.BASIC);
+            }
+            roster.collect(fm);
+        }
+        return roster;
+    }
+
+    /**
+     * @return A Forneymon of a basic kind chosen by i, but with a type name of its own
+     */
+    static Forneymon rostermon (int i) {
+        String type = "Rostermon" + i;
+        int level = 1 + i % 10;
+        switch (i % 3) {
+            case 0:
+                return new Dampymon(level) {
+                    @Override
+                    public String getFMType () { return type; }
+                };
+            case 1:
+                return new Burnymon(level) {
+                    @Override
+                    public String getFMType () { return type; }
+                };
+            default:
+                return new Leafymon(level) {
+                    @Override
+                    public String getFMType () { return type; }
+                };
+        }
+    }
+
+}
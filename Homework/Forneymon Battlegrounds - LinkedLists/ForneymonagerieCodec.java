@@ -0,0 +1,364 @@
+package main.forneymon.arena;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import main.forneymon.fmtypes.*;
+
+/**
+ * Reads and writes Forneymonagerie rosters in a compact binary format,
+ * streamed through NIO channels, for rosters persisted and shipped far
+ * too often to go through toString.
+ * <p>
+ * A roster is written as a 4 byte magic number and a version byte,
+ * then one record per Forneymon in order, then a 0 byte. Each record
+ * begins with its type's id in the roster's dictionary, plus one; the
+ * first record of each type instead uses the next unused id and follows
+ * it with the type's name and damage type, so the dictionary is built
+ * as the roster streams by and costs a few bytes per type, not per
+ * Forneymon. Every roster starts a fresh dictionary, so each can be
+ * read on its own. Then come the level, which must be
+ * positive, and health. Ids, lengths and the
+ * characters of names are unsigned varints; levels and health are
+ * zigzag varints, so that a fainted Forneymon's negative health stays
+ * short.
+ * <p>
+ * Writing goes through one reused direct buffer and an open-addressed
+ * dictionary that is cleared rather than reallocated, so a roster is
+ * encoded without allocating per Forneymon. Reading builds each
+ * Forneymon with the factory registered for its type, then restores its
+ * health by dealing it BASIC damage. Factories for Dampymon, Burnymon,
+ * Leafymon and Zappymon are registered to begin with.
+ * <p>
+ * A codec is not thread-safe. When one channel carries several rosters,
+ * read them all through the same codec, which keeps any bytes it read
+ * past the end of one roster for the next.
+ */
+public class ForneymonagerieCodec {
+
+    private static final int MAGIC = 0x464D4E47; // "FMNG"
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 8192;
+    // Largest varint, and so the largest id, level or health
+    private static final int MAX_VARINT = 5;
+    private static final int DICTIONARY_CAPACITY = 16;
+
+    // Fields
+    // -----------------------------------------------------------
+    private final Map<String, IntFunction<? extends Forneymon>> factories;
+    private final ByteBuffer writeBuffer, readBuffer;
+    private ReadableByteChannel lastRead;
+
+    // Write dictionary: types by hash slot, and the id of each
+    private String[] dictionaryTypes;
+    private int[] dictionaryIds;
+    private int dictionarySize;
+
+    // Read dictionary: the type and damage type of each id
+    private final List<String> readTypes;
+    private final List<DamageType> readDamageTypes;
+
+
+    // Constructor
+    // -----------------------------------------------------------
+    public ForneymonagerieCodec () {
+        this.factories = new HashMap<String, IntFunction<? extends Forneymon>>();
+        this.writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.readBuffer.limit(0);
+        this.dictionaryTypes = new String[DICTIONARY_CAPACITY];
+        this.dictionaryIds = new int[DICTIONARY_CAPACITY];
+        this.readTypes = new ArrayList<String>();
+        this.readDamageTypes = new ArrayList<DamageType>();
+
+        register("Dampymon", Dampymon::new);
+        register("Burnymon", Burnymon::new);
+        register("Leafymon", Leafymon::new);
+        register("Zappymon", Zappymon::new);
+    }
+
+    // Methods
+    // -----------------------------------------------------------
+    /**
+     * Registers the factory that read uses to build Forneymon of the given type,
+     * replacing any registered before.
+     * @param fmType The type of Forneymon the factory builds
+     * @param factory Builds a Forneymon of the type, at full health, at the given level
+     */
+    public void register (String fmType, IntFunction<? extends Forneymon> factory) {
+        factories.put(fmType, factory);
+    }
+
+    /**
+     * Writes the given roster to the given channel.
+     * @param roster The Forneymonagerie being written, which is not changed
+     * @param out The channel the roster is written to
+     * @return The number of bytes written
+     * @throws IOException If the channel fails
+     */
+    public long write (ForneymonagerieInterface roster, WritableByteChannel out) throws IOException {
+        var buffer = writeBuffer;
+        long written = 0;
+        clearDictionary();
+        buffer.clear();
+        buffer.putInt(MAGIC).put(VERSION);
+
+        for (Forneymon fm : roster) {
+            if (buffer.remaining() < 3 * MAX_VARINT) {
+                written += flush(out);
+            }
+            var fmType = fm.getFMType();
+            int known = dictionarySize;
+            int id = dictionaryId(fmType);
+            putVarint(id + 1);
+            if (id == known) {
+                written += putName(fmType, out);
+                if (buffer.remaining() < 1 + 2 * MAX_VARINT) {
+                    written += flush(out);
+                }
+                buffer.put((byte) fm.getDamageType().ordinal());
+            }
+            putVarint(zigzag(fm.getLevel()));
+            putVarint(zigzag(fm.getHealth()));
+        }
+
+        if (!buffer.hasRemaining()) {
+            written += flush(out);
+        }
+        buffer.put((byte) 0);
+        return written + flush(out);
+    }
+
+    /**
+     * Reads one roster from the given channel, collecting each of its Forneymon in
+     * order into the given collection.
+     * @param in The channel the roster is read from
+     * @param into The collection the Forneymon are collected into
+     * @return The number of Forneymon read
+     * @throws EOFException If the channel ends before the roster does
+     * @throws StreamCorruptedException If the bytes are not a roster, use a type id
+     * not yet defined in the roster or a level below 1, or name a type with no
+     * factory registered or whose factory disagrees with them
+     * @throws IOException If the channel fails
+     */
+    public int read (ReadableByteChannel in, ForneymonagerieInterface into) throws IOException {
+        if (in != lastRead) {
+            readBuffer.limit(0);
+            lastRead = in;
+        }
+        readTypes.clear();
+        readDamageTypes.clear();
+        require(in, 5);
+        if (readBuffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("not a Forneymonagerie roster");
+        }
+        var version = readBuffer.get();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported roster version " + version);
+        }
+
+        var types = readTypes;
+        var damageTypes = readDamageTypes;
+        var allDamageTypes = DamageType.values();
+        int count = 0;
+        for (int tag = getVarint(in); tag != 0; tag = getVarint(in), count++) {
+            int id = tag - 1;
+            if (id == types.size()) {
+                types.add(getName(in));
+                require(in, 1);
+                int ordinal = readBuffer.get() & 0xFF;
+                if (ordinal >= allDamageTypes.length) {
+                    throw new StreamCorruptedException("unknown damage type " + ordinal);
+                }
+                damageTypes.add(allDamageTypes[ordinal]);
+            } else if (id < 0 || id > types.size()) {
+                throw new StreamCorruptedException("undefined type id " + Integer.toUnsignedString(id));
+            }
+            int level = unzigzag(getVarint(in));
+            if (level < 1) {
+                throw new StreamCorruptedException("invalid level " + level);
+            }
+            int health = unzigzag(getVarint(in));
+            into.collect(build(types.get(id), damageTypes.get(id), level, health));
+        }
+        return count;
+    }
+
+
+    // Private helper methods
+    // -----------------------------------------------------------
+
+    /**
+     * Builds the Forneymon a record describes, checking its factory agrees
+     */
+    private Forneymon build (String fmType, DamageType damageType, int level, int health) throws StreamCorruptedException {
+        var factory = factories.get(fmType);
+        if (factory == null) {
+            throw new StreamCorruptedException("no factory registered for " + fmType);
+        }
+        Forneymon fm;
+        try {
+            fm = factory.apply(level);
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("factory for " + fmType + " rejected level " + level);
+        }
+        if (!fm.getFMType().equals(fmType) || fm.getDamageType() != damageType) {
+            throw new StreamCorruptedException("factory for " + fmType + " built a " + fm.getFMType());
+        }
+        if (fm.getHealth() > health) {
+            fm.takeDamage(fm.getHealth() - health, DamageType.BASIC);
+        }
+        if (fm.getHealth() != health) {
+            throw new StreamCorruptedException("cannot restore " + fmType + " to health " + health);
+        }
+        return fm;
+    }
+
+    /**
+     * Writes out everything in the write buffer and clears it
+     * @return The number of bytes written
+     */
+    private int flush (WritableByteChannel out) throws IOException {
+        var buffer = writeBuffer;
+        buffer.flip();
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    /**
+     * Reads from the channel until at least n bytes are buffered
+     */
+    private void require (ReadableByteChannel in, int n) throws IOException {
+        var buffer = readBuffer;
+        if (buffer.remaining() >= n) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < n) {
+            if (in.read(buffer) < 0) {
+                buffer.flip();
+                throw new EOFException("roster ended early");
+            }
+        }
+        buffer.flip();
+    }
+
+    private void putVarint (int value) {
+        var buffer = writeBuffer;
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private int getVarint (ReadableByteChannel in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT; shift += 7) {
+            require(in, 1);
+            byte b = readBuffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("malformed varint");
+    }
+
+    /**
+     * Writes a type's name as its length and then each of its characters
+     * @return The number of bytes flushed to make room
+     */
+    private int putName (String fmType, WritableByteChannel out) throws IOException {
+        int written = 0;
+        int length = fmType.length();
+        putVarint(length);
+        for (int i = 0; i < length; i++) {
+            if (writeBuffer.remaining() < 3) {
+                written += flush(out);
+            }
+            putVarint(fmType.charAt(i));
+        }
+        return written;
+    }
+
+    private String getName (ReadableByteChannel in) throws IOException {
+        int length = getVarint(in);
+        if (length < 0 || length > Character.MAX_VALUE) {
+            throw new StreamCorruptedException("malformed type name");
+        }
+        var name = new char[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = (char) getVarint(in);
+        }
+        return new String(name);
+    }
+
+    private static int zigzag (int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unzigzag (int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private void clearDictionary () {
+        if (dictionarySize > 0) {
+            Arrays.fill(dictionaryTypes, null);
+            dictionarySize = 0;
+        }
+    }
+
+    /**
+     * @return The id of the given type in the write dictionary, adding it with
+     * the next id if it is new
+     */
+    private int dictionaryId (String fmType) {
+        int mask = dictionaryTypes.length - 1;
+        int slot = fmType.hashCode() & mask;
+        while (dictionaryTypes[slot] != null) {
+            if (dictionaryTypes[slot].equals(fmType)) {
+                return dictionaryIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        dictionaryTypes[slot] = fmType;
+        dictionaryIds[slot] = dictionarySize++;
+        if (2 * dictionarySize > dictionaryTypes.length) {
+            growDictionary();
+        }
+        return dictionarySize - 1;
+    }
+
+    private void growDictionary () {
+        var types = dictionaryTypes;
+        var ids = dictionaryIds;
+        dictionaryTypes = new String[types.length * 2];
+        dictionaryIds = new int[types.length * 2];
+        int mask = dictionaryTypes.length - 1;
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != null) {
+                int slot = types[i].hashCode() & mask;
+                while (dictionaryTypes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                dictionaryTypes[slot] = types[i];
+                dictionaryIds[slot] = ids[i];
+            }
+        }
+    }
+
+}
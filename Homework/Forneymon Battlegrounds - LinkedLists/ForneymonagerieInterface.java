@@ -1,17 +1,119 @@
 package main.forneymon.arena;
 
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import main.forneymon.fmtypes.*;
 
-public interface ForneymonagerieInterface {
+public interface ForneymonagerieInterface extends Iterable<Forneymon> {
 
     boolean empty ();
     int size ();
     boolean collect (Forneymon toAdd);
     boolean releaseType (String fmType);
+    
+    /**
+     * @param index The index of the Forneymon, from 0 up to but not including size
+     * @return The Forneymon at the given index
+     * @throws IllegalArgumentException If the index is out of range
+     */
     Forneymon get (int index);
+    
     Forneymon remove (int index);
     int getTypeIndex (String fmType);
     boolean containsType (String fmType);
     void rearrange (String fmType, int index);
     
+    /**
+     * Collects each of the given Forneymon in order, as by collect.
+     * @param toAdd The Forneymon to collect
+     * @return The number of Forneymon newly added rather than merged into one of their type
+     */
+    default int collectAll (Iterable<? extends Forneymon> toAdd) {
+        int added = 0;
+        for (Forneymon fm : toAdd) {
+            if (collect(fm)) {
+                added++;
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Collects a copy of each of the other collection's Forneymon in order, leaving
+     * the other collection unchanged.
+     * @param other The collection being merged into this one
+     * @return The number of Forneymon newly added rather than merged into one of their type
+     */
+    default int mergeFrom (ForneymonagerieInterface other) {
+        int added = 0;
+        for (Forneymon fm : other) {
+            if (collect(fm.clone())) {
+                added++;
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Releases the Forneymon of each of the given types that are in the collection.
+     * @param fmTypes The types of Forneymon to release
+     * @return The number of Forneymon released
+     */
+    default int releaseTypes (Set<String> fmTypes) {
+        int released = 0;
+        for (String fmType : fmTypes) {
+            if (releaseType(fmType)) {
+                released++;
+            }
+        }
+        return released;
+    }
+    
+    /**
+     * Releases every Forneymon that fails the given test, keeping the rest in order.
+     * Implementations whose iterator's remove is not cheap override this to
+     * compact themselves in one pass.
+     * @param keep The test each Forneymon kept must pass
+     * @return The number of Forneymon released
+     */
+    default int retainIf (Predicate<? super Forneymon> keep) {
+        int released = 0;
+        for (Iterator<Forneymon> it = iterator(); it.hasNext(); ) {
+            if (!keep.test(it.next())) {
+                it.remove();
+                released++;
+            }
+        }
+        return released;
+    }
+    
+    /**
+     * Implementations that can split themselves by position override this; the
+     * default splits by copying batches of the iterator's elements into arrays.
+     * @return A Spliterator over the Forneymon in order, which knows its size
+     */
+    @Override
+    default Spliterator<Forneymon> spliterator () {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+    
+    /**
+     * @return A sequential Stream of the Forneymon in order
+     */
+    default Stream<Forneymon> stream () {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * @return A possibly parallel Stream of the Forneymon in order
+     */
+    default Stream<Forneymon> parallelStream () {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
 }
@@ -1,6 +1,9 @@
 package main.forneymon.arena;
 
-import java.util.Objects;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import main.forneymon.fmtypes.*;
 
 // Halle Vogelpohl
@@ -13,7 +16,10 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
     // Fields
     // -----------------------------------------------------------
     private Node sentinel;
+    private Map<String, Node> typeIndex;
     private int size, modCount;
+    // The hashCode of the set of types held, kept as they come and go
+    private int typeHash;
     
     
     // Constructor
@@ -23,6 +29,7 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         this.sentinel = new Node(null);
         this.sentinel.next = this.sentinel;
         this.sentinel.prev = this.sentinel;
+        this.typeIndex = new HashMap<String, Node>();
     }
    
     // Methods
@@ -49,19 +56,11 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @return if the given Forneymon is of a new type and added to the end of the LinkedForneymonagerie.
      */  
     public boolean collect (Forneymon toAdd) { 
-        var fmIndex = getTypeIndex(toAdd.getFMType());
-        var fmToCheck = get(fmIndex);
-        
-        if (fmIndex != -1) {
-            if (fmToCheck == toAdd) {
-                return false;
-            } else {
-                fmToCheck.addLevels(toAdd.getLevel());
-                modCount++;
-                return false;
-            }  
+        if (levelUpExisting(toAdd)) {
+            return false;
         }
-        append(toAdd);
+        typeIndex.put(toAdd.getFMType(), append(toAdd));
+        typeHash += toAdd.getFMType().hashCode();
         size++;
         modCount++;
         return true;
@@ -75,11 +74,15 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @return Returns true if the given Forneymon is being released, false otherwise.
      */
     public boolean releaseType (String fmType) {
-        if (containsType(fmType)) {
-            remove(getTypeIndex(fmType));
-            return true;
+        var released = typeIndex.remove(fmType);
+        if (released == null) {
+            return false;
         }
-        return false;
+        unlink(released);
+        typeHash -= fmType.hashCode();
+        this.size--;
+        modCount++;
+        return true;
     }
     
     /**
@@ -88,13 +91,8 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @return The Forneymon at the given index
      */ 
     public Forneymon get (int index) {
-        var currentIndex = 0;
-        for (Node n = this.sentinel.next; n != this.sentinel; n = n.next, currentIndex++) {
-            if (currentIndex == index) {
-                return n.fm;
-            }
-        }
-        return null;
+        indexValidityCheck(index);
+        return nodeAt(index).fm;
     }
     
     /**
@@ -103,29 +101,34 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @return The Forneymon that was removed from the specified index.
      */
     public Forneymon remove (int index) {
-        var removed = get(index);
         indexValidityCheck(index);  
-        removeNode(index);
+        var removed = nodeAt(index);
+        typeIndex.remove(removed.fm.getFMType());
+        typeHash -= removed.fm.getFMType().hashCode();
+        unlink(removed);
         this.size--;
         modCount++;
-        return removed;
+        return removed.fm;
     }
     
     /**
      * Returns the index of a Forneymon with the given fmType. Returns -1 if 
-     * the type isn't found.
+     * the type isn't found. The node is found through the type index, so
+     * only the walk back from it to the head is needed to count its position.
      * @param fmType The Forneymon type checking if found in the LinkedForneymonagerie
      * @return The index where the Forneymon type is in the collection, or -1 if the
      * Forneymon type isn't found.
      */
     public int getTypeIndex (String fmType) {
+        var found = typeIndex.get(fmType);
+        if (found == null) {
+            return -1;
+        }
         int index = 0;
-        for (Node n = this.sentinel.next; n != this.sentinel; n = n.next, index++) {
-            if (n.fm.getFMType().equals(fmType)) {
-                return index;
-            }
+        for (Node n = found.prev; n != this.sentinel; n = n.prev) {
+            index++;
         }
-        return -1;
+        return index;
     }
     
     /**
@@ -134,11 +137,7 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @return Returns true if the given Forneymon type is found within the LinkedForneymonagerie, false otherwise
      */
     public boolean containsType (String toCheck) {
-        if (getTypeIndex(toCheck) == -1) { 
-            return false;
-        } else {
-            return true;
-        }
+        return typeIndex.containsKey(toCheck);
     }
     
     /**
@@ -152,12 +151,18 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         temp.size = this.size;
         temp.modCount = this.modCount;
         temp.sentinel = this.sentinel;
+        temp.typeIndex = this.typeIndex;
+        temp.typeHash = this.typeHash;
         this.size = other.size;
         this.modCount = other.modCount;
         this.sentinel = other.sentinel;
+        this.typeIndex = other.typeIndex;
+        this.typeHash = other.typeHash;
         other.size = temp.size;
         other.modCount = temp.modCount;
         other.sentinel = temp.sentinel;
+        other.typeIndex = temp.typeIndex;
+        other.typeHash = temp.typeHash;
         
         this.modCount++;
         other.modCount++;
@@ -169,10 +174,13 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      */
     public void rearrange (String fmType, int index) {
         indexValidityCheck(index);
-        Node fmToMove = new Node (remove(getTypeIndex(fmType)));
+        Node fmToMove = typeIndex.get(fmType);
+        if (fmToMove == null) {
+            throw new IllegalArgumentException();
+        }
 
+        unlink(fmToMove);
         insertAt(fmToMove, index);     
-        this.size++;
         modCount++;
     }
     
@@ -188,7 +196,20 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
     }
     
     /**
-     * Clones a new LinkedForneymonagerie from the existing LinkedForneymonagerie
+     * Returns a fail-fast java.util.Iterator over the Forneymon from first to last,
+     * for enhanced-for loops and streams. Unlike getIterator it does not wrap around,
+     * and it throws ConcurrentModificationException once the collection is changed
+     * other than through its own remove.
+     * @return The new java.util.Iterator
+     */
+    @Override
+    public java.util.Iterator<Forneymon> iterator () {
+        return new SequenceIterator();
+    }
+    
+    /**
+     * Clones a new LinkedForneymonagerie from the existing LinkedForneymonagerie in
+     * one pass, appending each copy directly since the types are already distinct
      * @return The new LinkedForneymonagerie cloned as a deep copy from the existing LinkedForneymonagerie
      */
     @Override
@@ -196,21 +217,34 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         LinkedForneymonagerie clone = new LinkedForneymonagerie();
         
         for (Node n = this.sentinel.next; n != this.sentinel; n = n.next) {
-            clone.collect(n.fm.clone());
+            var copy = n.fm.clone();
+            clone.typeIndex.put(copy.getFMType(), clone.append(copy));
         }
+        clone.size = this.size;
+        clone.typeHash = this.typeHash;
         clone.modCount = this.modCount;
         return clone;
     }
     
     /**
-     * Checks if another LinkedForneymonagerie is equal to the current LinkedForneymonagerie
+     * Checks if another LinkedForneymonagerie is equal to the current LinkedForneymonagerie,
+     * only walking the two when their sizes and hash codes match
      * @param other The other LinkedForneymonagerie which is being checked for equality with the 
      * current LinkedForneymonagerie
-     * @return Returns true if the two LinkedForneymonagerie are equal
+     * @return Returns true if the two LinkedForneymonagerie hold equal Forneymon in the same order
      */
     @Override
     public boolean equals (Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LinkedForneymonagerie)) {
+            return false;
+        }
         LinkedForneymonagerie fmOther = ((LinkedForneymonagerie) other);
+        if (this.size != fmOther.size || this.typeHash != fmOther.typeHash) {
+            return false;
+        }
         for (Node n = this.sentinel.next, nOther = fmOther.sentinel.next; n != this.sentinel; n = n.next, nOther = nOther.next) {
             if (!n.fm.equals(nOther.fm)) { 
                 return false;
@@ -219,9 +253,15 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         return true; 
     }
     
+    /**
+     * Returns the hash code of the set of types held, in O(1). Forneymon can change
+     * while collected, so their levels and health are left out; equal collections
+     * hold the same types, and so hash the same.
+     * @return The hash code of this LinkedForneymonagerie
+     */
     @Override
     public int hashCode () {
-        return Objects.hash(this.sentinel, this.size, this.modCount);
+        return this.typeHash;
     }
     
     @Override
@@ -251,24 +291,37 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         }
     }
     
-    private void removeNode (int index) {
+    /**
+     * Returns the Node at the given index, which must be valid
+     * @param index The index of the Node
+     * @return The Node at that index
+     */
+    private Node nodeAt (int index) {
         Node current = this.sentinel.next;
         
         while (index > 0) {
             current = current.next;
             index--;
         }    
-
-        current.prev.next = current.next;
-        current.next.prev = current.prev;
-        current = current.prev;
+        return current;
+    }
+    
+    /**
+     * Unlinks the given Node from its neighbors, leaving its own next and prev
+     * references in place so that an Iterator on it can still step away
+     * @param toRemove The Node being unlinked
+     */
+    private void unlink (Node toRemove) {
+        toRemove.prev.next = toRemove.next;
+        toRemove.next.prev = toRemove.prev;
     }
     
     /**
      * Appends a Forneymon to the end of the LinkedForneymonagerie
      * @param toAdd The Forneymon being appended to the LinkedForneymonagerie
+     * @return The new Node holding toAdd
      */
-    private void append(Forneymon toAdd) {
+    private Node append(Forneymon toAdd) {
         Node toAppend = new Node(toAdd);
         Node tail = this.sentinel.prev;
         
@@ -276,13 +329,20 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         toAppend.prev = tail;
         toAppend.next = this.sentinel;
         this.sentinel.prev = toAppend;
+        return toAppend;
     }
     
     /**
-     * Prepends a Forneymon to the beginning of the LinkedForneymonagerie
+     * Prepends a Forneymon to the beginning of the LinkedForneymonagerie. As with
+     * collect, if one of its type is already collected, that one is leveled up in
+     * place instead.
      * @param toAdd The Forneymon being prepended to the LinkedForneymonagerie
+     * @return Returns true if toAdd was prepended, false if its type was already collected
      */
-    public void prepend (Forneymon toAdd) {
+    public boolean prepend (Forneymon toAdd) {
+        if (levelUpExisting(toAdd)) {
+            return false;
+        }
         Node newNode = new Node(toAdd);
         Node head = this.sentinel.next;
         
@@ -290,6 +350,29 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         newNode.prev = this.sentinel;
         head.prev = newNode;
         this.sentinel.next = newNode;
+        typeIndex.put(toAdd.getFMType(), newNode);
+        typeHash += toAdd.getFMType().hashCode();
+        size++;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * Levels up the Forneymon of toAdd's type already in the LinkedForneymonagerie,
+     * if there is one and it isn't toAdd itself, by toAdd's level
+     * @param toAdd The Forneymon being collected
+     * @return Returns true if a Forneymon of toAdd's type was already collected
+     */
+    private boolean levelUpExisting (Forneymon toAdd) {
+        var existing = typeIndex.get(toAdd.getFMType());
+        if (existing == null) {
+            return false;
+        }
+        if (existing.fm != toAdd) {
+            existing.fm.addLevels(toAdd.getLevel());
+            modCount++;
+        }
+        return true;
     }
     
     /**
@@ -297,11 +380,10 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
      * @param toAdd The new Node being inserted
      * @param index The index at which the Node is to be inserted
      */
-    public void insertAt(Node toAdd, int index) {
+    private void insertAt(Node toAdd, int index) {
         Node current = this.sentinel.next;
         
         while (index > 0) {
-            current.prev = current;
             current = current.next;
             index--;
         }  
@@ -404,7 +486,9 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
             if (!isValid()) {
                 throw new IllegalStateException();
             }           
-            removeNode(getTypeIndex(fm.getFMType()));
+            typeIndex.remove(fm.getFMType());
+            typeHash -= fm.getFMType().hashCode();
+            unlink(current);
             prev();
             size--;
             itModCount++;
@@ -414,6 +498,51 @@ public class LinkedForneymonagerie implements ForneymonagerieInterface {
         
     }
     
+    /**
+     * The java.util.Iterator behind iterator(), walking forward from the head
+     */
+    private class SequenceIterator implements java.util.Iterator<Forneymon> {
+        private Node next = sentinel.next, lastReturned;
+        private int expectedModCount = modCount;
+        
+        @Override
+        public boolean hasNext () {
+            return next != sentinel;
+        }
+        
+        @Override
+        public Forneymon next () {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == sentinel) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            return lastReturned.fm;
+        }
+        
+        /**
+         * Unlinks the Node holding the Forneymon last returned by next
+         */
+        @Override
+        public void remove () {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            typeIndex.remove(lastReturned.fm.getFMType());
+            typeHash -= lastReturned.fm.getFMType().hashCode();
+            unlink(lastReturned);
+            lastReturned = null;
+            size--;
+            expectedModCount = ++modCount;
+        }
+    }
+    
     private class Node {
         Node next, prev;
         Forneymon fm;
@@ -0,0 +1,656 @@
+package main.forneymon.arena;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import main.forneymon.fmtypes.*;
+
+/**
+ * Collections of Forneymon ready to fight in the arena, stored as an
+ * order-statistic tree for rosters with millions of entries that are
+ * both read by position and spliced. The Forneymon are the in-order
+ * sequence of a treap: a binary tree kept balanced by random heap
+ * priorities, in which every node knows the size of its subtree, so
+ * the node at any index is found, cut out or spliced in with O(log n)
+ * expected work. A map from each type to its node, together with
+ * parent references, lets getTypeIndex count a node's position on the
+ * way back up to the root in O(log n) as well.
+ */
+public class TreeForneymonagerie implements ForneymonagerieInterface {
+
+    // Fields
+    // -----------------------------------------------------------
+    private Node root;
+    private Map<String, Node> typeIndex;
+    private int modCount;
+    // The hashCode of the set of types held, kept as they come and go
+    private int typeHash;
+    private final Random random;
+
+
+    // Constructor
+    // -----------------------------------------------------------
+    public TreeForneymonagerie () {
+        this.root = null;
+        this.modCount = 0;
+        this.typeIndex = new HashMap<String, Node>();
+        this.random = new Random();
+    }
+
+    // Methods
+    // -----------------------------------------------------------
+    /**
+     * Checks if the given TreeForneymonagerie is empty
+     * @return Return if this TreeForneymonagerie is empty
+     */
+    public boolean empty () {
+        return this.root == null;
+    }
+
+    /**
+     * @return Returns the number of Forneymon in the collection
+     */
+    public int size () {
+        return size(this.root);
+    }
+
+    /**
+     * Returns true if toAdd was newly added to the TreeForneymonagerie and
+     * false otherwise, in which case its levels are added to the Forneymon
+     * of its type already collected.
+     * @param toAdd is the Forneymon type the user wants to add to the TreeForneymonagerie.
+     * @return if the given Forneymon is of a new type and added to the end of the TreeForneymonagerie.
+     */
+    public boolean collect (Forneymon toAdd) {
+        var existing = typeIndex.get(toAdd.getFMType());
+
+        if (existing != null) {
+            if (existing.fm != toAdd) {
+                existing.fm.addLevels(toAdd.getLevel());
+                modCount++;
+            }
+            return false;
+        }
+        var added = new Node(toAdd, random.nextInt());
+        typeIndex.put(toAdd.getFMType(), added);
+        typeHash += toAdd.getFMType().hashCode();
+        setRoot(merge(this.root, added));
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the Forneymon of the given subtype from the
+     * TreeForneymonagerie and returns true. If the given fmType doesn't
+     * exist then returns false.
+     * @param fmType The type of Forneymon to be removed from the collection.
+     * @return Returns true if the given Forneymon is being released, false otherwise.
+     */
+    public boolean releaseType (String fmType) {
+        var released = typeIndex.get(fmType);
+        if (released == null) {
+            return false;
+        }
+        remove(rank(released));
+        return true;
+    }
+
+    /**
+     * Returns the Forneymon at the given index in the TreeForneymonagerie, if valid.
+     * @param index The index being checked for the Forneymon
+     * @return The Forneymon at the given index
+     */
+    public Forneymon get (int index) {
+        indexValidityCheck(index);
+        return nodeAt(index).fm;
+    }
+
+    /**
+     * Removes and returns the Fornyemon at the given index, if valid.
+     * @param index The index of the Forneymon to be removed.
+     * @return The Forneymon that was removed from the specified index.
+     */
+    public Forneymon remove (int index) {
+        indexValidityCheck(index);
+        var removed = cut(index);
+        typeIndex.remove(removed.fm.getFMType());
+        typeHash -= removed.fm.getFMType().hashCode();
+        modCount++;
+        return removed.fm;
+    }
+
+    /**
+     * Returns the index of a Forneymon with the given fmType. Returns -1 if
+     * the type isn't found.
+     * @param fmType The Forneymon type checking if found in the TreeForneymonagerie
+     * @return The index where the Forneymon type is in the collection, or -1 if the
+     * Forneymon type isn't found.
+     */
+    public int getTypeIndex (String fmType) {
+        var found = typeIndex.get(fmType);
+        return found == null ? -1 : rank(found);
+    }
+
+    /**
+     * Checks if a given Forneymon exists within the TreeForneymonagerie.
+     * @param toCheck is the Forneymon type, as a String, specified by the user.
+     * @return Returns true if the given Forneymon type is found within the TreeForneymonagerie, false otherwise
+     */
+    public boolean containsType (String toCheck) {
+        return typeIndex.containsKey(toCheck);
+    }
+
+    /**
+     * Trades the contents of this TreeForneymonagerie and another TreeForneymonagerie
+     * @param other The TreeForneymonagerie whose Forneymon are swapped with this one's
+     */
+    public void trade (TreeForneymonagerie other) {
+        var root = this.root;
+        var typeIndex = this.typeIndex;
+        var typeHash = this.typeHash;
+        var modCount = this.modCount;
+        this.root = other.root;
+        this.typeIndex = other.typeIndex;
+        this.typeHash = other.typeHash;
+        this.modCount = other.modCount;
+        other.root = root;
+        other.typeIndex = typeIndex;
+        other.typeHash = typeHash;
+        other.modCount = modCount;
+
+        this.modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Moves the Forneymon of the given type to the given index, shifting those
+     * in between over by one.
+     * @param fmType The type of Forneymon that is being rearranged.
+     * @param index The index where the Forneymon is being moved.
+     */
+    public void rearrange (String fmType, int index) {
+        indexValidityCheck(index);
+        var toMove = typeIndex.get(fmType);
+        if (toMove == null) {
+            throw new IllegalArgumentException();
+        }
+
+        cut(rank(toMove));
+        var parts = split(this.root, index);
+        setRoot(merge(merge(parts[0], toMove), parts[1]));
+        modCount++;
+    }
+
+    /**
+     * Returns a new Iterator on the TreeForneymonagerie that begins on the first Forneymon.
+     * @return The new Iterator
+     */
+    public TreeForneymonagerie.Iterator getIterator () {
+        if (empty()) {
+            throw new IllegalStateException();
+        }
+        return new Iterator(this);
+    }
+
+    /**
+     * Returns a fail-fast java.util.Iterator over the Forneymon from first to last,
+     * for enhanced-for loops and streams. Unlike getIterator it does not wrap around,
+     * and it throws ConcurrentModificationException once the collection is changed
+     * other than through its own remove.
+     * @return The new java.util.Iterator
+     */
+    @Override
+    public java.util.Iterator<Forneymon> iterator () {
+        return new SequenceIterator();
+    }
+
+    /**
+     * Returns a Spliterator over the Forneymon that splits its range of indices in
+     * half, so that parallel streams divide the work evenly across threads.
+     * Each part finds its first node in O(log n) and walks on in order from there.
+     * It binds to the collection on first use and is fail-fast after that.
+     * @return The new Spliterator
+     */
+    @Override
+    public Spliterator<Forneymon> spliterator () {
+        return new RangeSpliterator(0, -1, 0);
+    }
+
+    /**
+     * Clones a new TreeForneymonagerie from the existing TreeForneymonagerie,
+     * copying the tree's shape node for node
+     * @return The new TreeForneymonagerie cloned as a deep copy from the existing TreeForneymonagerie
+     */
+    @Override
+    public TreeForneymonagerie clone () {
+        TreeForneymonagerie clone = new TreeForneymonagerie();
+
+        clone.setRoot(clone.copy(this.root));
+        clone.typeHash = this.typeHash;
+        clone.modCount = this.modCount;
+        return clone;
+    }
+
+    /**
+     * Checks if another TreeForneymonagerie is equal to the current TreeForneymonagerie
+     * @param other The other TreeForneymonagerie which is being checked for equality with the
+     * current TreeForneymonagerie
+     * @return Returns true if the two TreeForneymonagerie hold equal Forneymon in the same order
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (!(other instanceof TreeForneymonagerie)) {
+            return false;
+        }
+        TreeForneymonagerie fmOther = (TreeForneymonagerie) other;
+        if (this.size() != fmOther.size() || this.typeHash != fmOther.typeHash) {
+            return false;
+        }
+        for (Node n = first(this.root), nOther = first(fmOther.root); n != null; n = successor(n), nOther = successor(nOther)) {
+            if (!n.fm.equals(nOther.fm)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the set of types held, in O(1). Forneymon can change
+     * while collected, so their levels and health are left out; equal collections
+     * hold the same types, and so hash the same.
+     * @return The hash code of this TreeForneymonagerie
+     */
+    @Override
+    public int hashCode () {
+        return typeHash;
+    }
+
+    @Override
+    public String toString () {
+        String[] result = new String[size()];
+        int i = 0;
+        for (Node n = first(this.root); n != null; n = successor(n), i++) {
+            result[i] = n.fm.toString();
+        }
+        return "[ " + String.join(", ", result) + " ]";
+    }
+
+
+    // Private helper methods
+    // -----------------------------------------------------------
+
+    /**
+     * Checks if a given index is invalid if
+     * - index < 0
+     * - index >= size
+     * @param index The index being checked for validity:
+     *  Must be less than the size and at least 0.
+     */
+    private void indexValidityCheck(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static int size (Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private void setRoot (Node root) {
+        this.root = root;
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * Recomputes the given node's subtree size and claims its children as its own
+     * @param n The node whose children just changed
+     */
+    private static void update (Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        if (n.left != null) { n.left.parent = n; }
+        if (n.right != null) { n.right.parent = n; }
+    }
+
+    /**
+     * Joins two treaps, every node of a coming before every node of b
+     * @return The root of the joined treap
+     */
+    private static Node merge (Node a, Node b) {
+        if (a == null) { return b; }
+        if (b == null) { return a; }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    /**
+     * Splits a treap in two after its first count nodes
+     * @return The roots of the first count nodes and of the rest, either possibly null
+     */
+    private static Node[] split (Node n, int count) {
+        if (n == null) {
+            return new Node[2];
+        }
+        Node[] parts;
+        if (size(n.left) >= count) {
+            parts = split(n.left, count);
+            n.left = parts[1];
+            parts[1] = n;
+        } else {
+            parts = split(n.right, count - size(n.left) - 1);
+            n.right = parts[0];
+            parts[0] = n;
+        }
+        update(n);
+        return parts;
+    }
+
+    /**
+     * Removes the node at the given index from the tree
+     * @param index A valid index
+     * @return The removed node, detached from the tree
+     */
+    private Node cut (int index) {
+        var before = split(this.root, index);
+        var after = split(before[1], 1);
+        setRoot(merge(before[0], after[1]));
+        var removed = after[0];
+        removed.parent = null;
+        return removed;
+    }
+
+    private Node nodeAt (int index) {
+        var current = this.root;
+        while (index != size(current.left)) {
+            if (index < size(current.left)) {
+                current = current.left;
+            } else {
+                index -= size(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return The index of the given node, counted on the way up to the root
+     */
+    private static int rank (Node n) {
+        int index = size(n.left);
+        for (; n.parent != null; n = n.parent) {
+            if (n.parent.right == n) {
+                index += size(n.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    private static Node first (Node n) {
+        if (n == null) { return null; }
+        while (n.left != null) { n = n.left; }
+        return n;
+    }
+
+    private static Node last (Node n) {
+        if (n == null) { return null; }
+        while (n.right != null) { n = n.right; }
+        return n;
+    }
+
+    private static Node successor (Node n) {
+        if (n.right != null) { return first(n.right); }
+        while (n.parent != null && n.parent.right == n) { n = n.parent; }
+        return n.parent;
+    }
+
+    private static Node predecessor (Node n) {
+        if (n.left != null) { return last(n.left); }
+        while (n.parent != null && n.parent.left == n) { n = n.parent; }
+        return n.parent;
+    }
+
+    /**
+     * Copies the given subtree with cloned Forneymon, indexing the copies by type
+     * @return The root of the copy
+     */
+    private Node copy (Node n) {
+        if (n == null) { return null; }
+        var copied = new Node(n.fm.clone(), n.priority);
+        typeIndex.put(copied.fm.getFMType(), copied);
+        copied.left = copy(n.left);
+        copied.right = copy(n.right);
+        update(copied);
+        return copied;
+    }
+
+
+    // Inner Classes
+    // -----------------------------------------------------------
+
+    public class Iterator {
+        private TreeForneymonagerie host;
+        private Node current;
+        private int itModCount;
+
+        Iterator (TreeForneymonagerie host) {
+            this.host = host;
+            this.current = first(host.root);
+            this.itModCount = host.modCount;
+        }
+
+        /**
+         * @return Returns true if the Iterator is valid
+         * and is at the last Forneymon in the collection, false otherwise.
+         */
+        public boolean atEnd () {
+            return isValid() && successor(current) == null;
+        }
+
+        /**
+         * @return Returns true if the Iterator is valid
+         * and is at the first Forneymon in the collection, false otherwise.
+         */
+        public boolean atStart () {
+            return isValid() && predecessor(current) == null;
+        }
+
+        /**
+         * @return Returns true if this Iterator's itModCount agrees with that of its owner's modCount
+         * and if the host TreeForneymonagerie has at least one element, false otherwise.
+         */
+        public boolean isValid () {
+            return !host.empty() && (itModCount == host.modCount);
+        }
+
+        /**
+         * @return The Forneymon that the Iterator is currently pointing at
+         */
+        public Forneymon getCurrent () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            return current.fm;
+        }
+
+        /**
+         * Advances the Iterator to the next Forneymon in the sequence,
+         * wrapping around to the first after the last.
+         */
+        public void next () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            var next = successor(current);
+            current = (next == null) ? first(host.root) : next;
+        }
+
+        /**
+         * Moves the Iterator to the previous Forneymon in the sequence,
+         * wrapping around to the last before the first.
+         */
+        public void prev () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            var prev = predecessor(current);
+            current = (prev == null) ? last(host.root) : prev;
+        }
+
+        /**
+         * Removes the Forneymon this Iterator references from the TreeForneymonagerie
+         * and moves the iterator to the Forneymon preceding the one it deleted.
+         * @return Returns a reference to the removed Forneymon
+         */
+        public Forneymon removeCurrent () {
+            if (!isValid()) {
+                throw new IllegalStateException();
+            }
+            var removed = current;
+            var prev = predecessor(removed);
+            host.remove(rank(removed));
+            current = (prev == null) ? last(host.root) : prev;
+            itModCount = host.modCount;
+            return removed.fm;
+        }
+
+    }
+
+    /**
+     * The java.util.Iterator behind iterator(), walking the tree in order
+     */
+    private class SequenceIterator implements java.util.Iterator<Forneymon> {
+        private Node next = first(root), lastReturned;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext () {
+            return next != null;
+        }
+
+        @Override
+        public Forneymon next () {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = successor(next);
+            return lastReturned.fm;
+        }
+
+        /**
+         * Removes the Forneymon last returned by next
+         */
+        @Override
+        public void remove () {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            TreeForneymonagerie.this.remove(rank(lastReturned));
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * The Spliterator behind spliterator(), covering the indices [index, fence)
+     */
+    private class RangeSpliterator implements Spliterator<Forneymon> {
+        private int index, fence, expectedModCount;
+        private Node next;
+
+        /**
+         * @param fence The index just past the range, or -1 to bind to the whole
+         * collection on first use
+         */
+        RangeSpliterator (int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence () {
+            if (fence < 0) {
+                fence = size();
+                expectedModCount = modCount;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<Forneymon> trySplit () {
+            int lo = index, mid = (lo + getFence()) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            // The first half keeps whatever node this one had already reached
+            var prefix = new RangeSpliterator(lo, mid, expectedModCount);
+            prefix.next = next;
+            index = mid;
+            next = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance (Consumer<? super Forneymon> action) {
+            if (index >= getFence()) {
+                return false;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                next = nodeAt(index);
+            }
+            var fm = next.fm;
+            next = successor(next);
+            index++;
+            action.accept(fm);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining (Consumer<? super Forneymon> action) {
+            while (tryAdvance(action)) {}
+        }
+
+        @Override
+        public long estimateSize () {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics () {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    private static class Node {
+        Node left, right, parent;
+        Forneymon fm;
+        int priority, size;
+
+        Node (Forneymon fm, int priority) {
+            this.fm = fm;
+            this.priority = priority;
+            this.size = 1;
+        }
+    }
+
+}
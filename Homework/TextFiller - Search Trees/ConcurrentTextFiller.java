@@ -0,0 +1,312 @@
+package main.textfill;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread-safe ternary-search-tree TextFiller in which readers never
+ * block: every add copies the nodes along its search path and publishes
+ * a brand new root, so contains and textFill always see a complete,
+ * unchanging version of the tree.
+ */
+public class ConcurrentTextFiller implements TextFiller {
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final AtomicReference<Version> current;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    public ConcurrentTextFiller () {
+        this.current = new AtomicReference<>(new Version(null, 0));
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return Returns the number of stored terms in the most recently published version
+     */
+    public int size () {
+        return this.current.get().size;
+    }
+
+    /**
+     * @return Returns true if the TextFiller has no search terms stored, false otherwise
+     */
+    public boolean empty () {
+        return this.current.get().root == null;
+    }
+
+    /**
+     * Adds the given search term toAdd to the TextFiller. Writers race by
+     * compare-and-set on the published version, retrying on a lost race,
+     * so readers are never held up by an add in progress.
+     * @param toAdd String to add to the TextFiller
+     */
+    public void add (String toAdd) {
+        String term = normalizeTerm(toAdd);
+        while (true) {
+            Version seen = this.current.get();
+            TTNode existing = findQuery(seen.root, term, 0);
+            if (existing != null && existing.wordEnd) { return; }
+            Version next = new Version(add(seen.root, term, 0), seen.size + 1);
+            if (this.current.compareAndSet(seen, next)) { return; }
+        }
+    }
+
+    /**
+     * Removes the given search term from the TextFiller, publishing a new
+     * version in which nodes no longer leading to any term are pruned.
+     * @param toRemove String to remove from the TextFiller
+     * @return Returns true if the term was stored and has been removed, false otherwise
+     */
+    public boolean remove (String toRemove) {
+        String term = normalizeTerm(toRemove);
+        while (true) {
+            Version seen = this.current.get();
+            TTNode existing = findQuery(seen.root, term, 0);
+            if (existing == null || !existing.wordEnd) { return false; }
+            Version next = new Version(remove(seen.root, term, 0), seen.size - 1);
+            if (this.current.compareAndSet(seen, next)) { return true; }
+        }
+    }
+
+    /**
+     * Returns true if the given String query exists within the TextFiller, false otherwise.
+     * @param query String query that we're checking for existence in the Ternary Tree
+     * @return Returns true if the query exists in the Ternary Tree, false otherwise
+     */
+    public boolean contains (String query) {
+        TTNode found = findQuery(this.current.get().root, normalizeTerm(query), 0);
+        return found != null && found.wordEnd;
+    }
+
+    /**
+     * Returns the first search term contained in the TextFiller that possesses the query as a prefix.
+     * If the given query is a prefix for NO search term, return null.
+     * @param query The String query being checked
+     * @return Returns the first search term containing the prefix of the query
+     */
+    public String textFill (String query) {
+        String prefix = normalizeTerm(query);
+        TTNode found = findQuery(this.current.get().root, prefix, 0);
+        // Half a surrogate pair prefixes no term, though it is a prefix of their chars
+        if (found == null || (!found.wordEnd && Character.isHighSurrogate(found.letter))) { return null; }
+
+        StringBuilder result = new StringBuilder(prefix);
+        while (!found.wordEnd) {
+            found = found.mid;
+            result.append(found.letter);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return Returns an ArrayList of Strings of the alphabetically sorted search terms
+     * within the most recently published version of this TextFiller.
+     */
+    public List<String> getSortedList () {
+        return getSortedList(this.current.get().root, new StringBuilder(), new ArrayList<String>());
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Returns a copy of the subtree rooted at current that also contains toAdd,
+     * sharing every node off of the search path with the original.
+     * @param current The current TTNode, never modified
+     * @param toAdd The normalized String being added
+     * @param index Index of the character in toAdd being placed
+     * @return The root of the new version of this subtree
+     */
+    private TTNode add (TTNode current, String toAdd, int index) {
+        char c = toAdd.charAt(index);
+        boolean last = index == toAdd.length() - 1;
+
+        if (current == null) {
+            return new TTNode(c, last, null, last ? null : add(null, toAdd, index + 1), null);
+        }
+
+        int compare = compareChars(current.letter, c);
+
+        if (compare > 0) {
+            return new TTNode(current.letter, current.wordEnd, add(current.left, toAdd, index), current.mid, current.right);
+        }
+        if (compare < 0) {
+            return new TTNode(current.letter, current.wordEnd, current.left, current.mid, add(current.right, toAdd, index));
+        }
+        if (last) {
+            return new TTNode(current.letter, true, current.left, current.mid, current.right);
+        }
+        return new TTNode(current.letter, current.wordEnd, current.left, add(current.mid, toAdd, index + 1), current.right);
+    }
+
+    /**
+     * Returns a copy of the subtree rooted at current without toRemove,
+     * dropping any copied node left with neither a word-end nor a mid subtree.
+     * @param current The current TTNode, never modified
+     * @param toRemove The normalized String being removed, known to be stored
+     * @param index Index of the character in toRemove being matched
+     * @return The root of the new version of this subtree, possibly null
+     */
+    private TTNode remove (TTNode current, String toRemove, int index) {
+        int compare = compareChars(current.letter, toRemove.charAt(index));
+
+        if (compare > 0) {
+            return new TTNode(current.letter, current.wordEnd, remove(current.left, toRemove, index), current.mid, current.right);
+        }
+        if (compare < 0) {
+            return new TTNode(current.letter, current.wordEnd, current.left, current.mid, remove(current.right, toRemove, index));
+        }
+
+        boolean wordEnd = current.wordEnd;
+        TTNode mid = current.mid;
+        if (index == toRemove.length() - 1) {
+            wordEnd = false;
+        } else {
+            mid = remove(mid, toRemove, index + 1);
+        }
+        if (!wordEnd && mid == null) {
+            return unlink(current.left, current.right);
+        }
+        return new TTNode(current.letter, wordEnd, current.left, mid, current.right);
+    }
+
+    /**
+     * Joins the left and right siblings of a removed node into one binary
+     * tree, promoting a copy of the right side's leftmost node when both exist.
+     * @param left The removed node's left subtree
+     * @param right The removed node's right subtree
+     * @return The root of the joined subtree, possibly null
+     */
+    private TTNode unlink (TTNode left, TTNode right) {
+        if (left == null) { return right; }
+        if (right == null) { return left; }
+
+        TTNode successor = right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return new TTNode(successor.letter, successor.wordEnd, left, successor.mid, removeLeftmost(right));
+    }
+
+    /**
+     * @param current The current TTNode, never modified
+     * @return A copy of the binary tree of siblings rooted at current without its leftmost node
+     */
+    private TTNode removeLeftmost (TTNode current) {
+        if (current.left == null) { return current.right; }
+        return new TTNode(current.letter, current.wordEnd, removeLeftmost(current.left), current.mid, current.right);
+    }
+
+    /**
+     * Finds the node holding the last character of the given query
+     * @param current The current TTNode
+     * @param query The normalized String query
+     * @param index Index of the character in query being matched
+     * @return The node containing the last character of the query, or null if absent
+     */
+    private TTNode findQuery (TTNode current, String query, int index) {
+        while (current != null) {
+            int compare = compareChars(current.letter, query.charAt(index));
+            if (compare > 0) {
+                current = current.left;
+            } else if (compare < 0) {
+                current = current.right;
+            } else if (index == query.length() - 1) {
+                return current;
+            } else {
+                current = current.mid;
+                index++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the words below current in alphabetical order
+     * @param current The current TTNode
+     * @param placeholder The characters on the path down to current
+     * @param result List of words collected so far
+     * @return result The List of words in the TextFiller
+     */
+    private List<String> getSortedList (TTNode current, StringBuilder placeholder, List<String> result) {
+        if (current == null) { return result; }
+        getSortedList(current.left, placeholder, result);
+        placeholder.append(current.letter);
+        if (current.wordEnd) { result.add(placeholder.toString()); }
+        getSortedList(current.mid, placeholder, result);
+        placeholder.setLength(placeholder.length() - 1);
+        getSortedList(current.right, placeholder, result);
+        return result;
+    }
+
+    /**
+     * Compares two chars of normalized terms in code-point order, so that this
+     * tree sorts and completes exactly as TernaryTreeTextFiller does
+     * @param c1 The first char
+     * @param c2 The second char
+     * @return Less than, equal to, or greater than 0 as c1 orders before, with, or after c2
+     */
+    private int compareChars (char c1, char c2) {
+        return TermNormalizer.codePointOrder(c1) - TermNormalizer.codePointOrder(c2);
+    }
+
+    /**
+     * Normalizes a term to either add or search for in the tree with the same
+     * rules as TernaryTreeTextFiller's default TermNormalizer.
+     * @param s The string to sanitize
+     * @return The sanitized version of s
+     */
+    private String normalizeTerm (String s) {
+        return TermNormalizer.DEFAULT.normalize(s);
+    }
+
+    // -----------------------------------------------------------
+    // Internal Storage
+    // -----------------------------------------------------------
+
+    /**
+     * A published root together with the term count it holds, swapped
+     * in as a single unit so size always agrees with the tree.
+     */
+    private static class Version {
+
+        final TTNode root;
+        final int size;
+
+        Version (TTNode root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+    }
+
+    /**
+     * Immutable ternary tree node; once published it is shared by
+     * every later version that did not add below it.
+     */
+    private static class TTNode {
+
+        final boolean wordEnd;
+        final char letter;
+        final TTNode left, mid, right;
+
+        TTNode (char c, boolean w, TTNode l, TTNode m, TTNode r) {
+            letter  = c;
+            wordEnd = w;
+            left    = l;
+            mid     = m;
+            right   = r;
+        }
+
+    }
+
+}
@@ -0,0 +1,293 @@
+package main.textfill;
+
+import java.util.*;
+
+/**
+ * A read-only TextFiller stored as a minimized directed acyclic word
+ * graph (DAWG): a trie in which every set of identical suffix subtrees,
+ * like the "-ing" or "-tion" tails shared by thousands of terms, is
+ * stored only once.
+ * <p>
+ * Built from the sorted terms of an existing TextFiller with the
+ * incremental algorithm of Daciuk et al., which only ever keeps the
+ * path of the most recently added term unminimized, so the full
+ * unshared trie is never materialized.
+ */
+public class DawgTextFiller implements TextFiller {
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final State root;
+    private final int size, stateCount;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    private DawgTextFiller (State root, int size, int stateCount) {
+        this.root = root;
+        this.size = size;
+        this.stateCount = stateCount;
+    }
+
+    /**
+     * Builds the minimized word graph holding every term of the given TextFiller.
+     * @param source The TextFiller whose terms are compressed
+     * @return A DawgTextFiller answering the same queries as source
+     */
+    public static DawgTextFiller minimize (TextFiller source) {
+        TreeSet<String> sorted = new TreeSet<String>(TermNormalizer.CODE_POINT_ORDER);
+        for (String s : source.getSortedList()) {
+            sorted.add(normalizeTerm(s));
+        }
+
+        Map<State, State> register = new HashMap<State, State>();
+        State root = new State();
+        String previous = "";
+        for (String term : sorted) {
+            int common = 0;
+            while (common < previous.length() && common < term.length()
+                    && previous.charAt(common) == term.charAt(common)) {
+                common++;
+            }
+
+            State last = root;
+            for (int i = 0; i < common; i++) {
+                last = last.lastChild();
+            }
+            if (last.count > 0) {
+                replaceOrRegister(last, register);
+            }
+
+            for (int i = common; i < term.length(); i++) {
+                State next = new State();
+                last.append(term.charAt(i), next);
+                last = next;
+            }
+            last.wordEnd = true;
+            previous = term;
+        }
+        if (root.count > 0) {
+            replaceOrRegister(root, register);
+        }
+        return new DawgTextFiller(root, sorted.size(), register.size() + 1);
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return Returns the number of stored terms inside of the TextFiller
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * @return Returns true if the TextFiller has no search terms stored, false otherwise
+     */
+    public boolean empty () {
+        return this.size == 0;
+    }
+
+    /**
+     * @return Returns the number of distinct states in the minimized graph,
+     * for comparison against the node count of the tree it was built from
+     */
+    public int stateCount () {
+        return this.stateCount;
+    }
+
+    /**
+     * A minimized graph is immutable; build a new one with minimize instead.
+     * @throws UnsupportedOperationException Always
+     */
+    public void add (String toAdd) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A minimized graph is immutable; build a new one with minimize instead.
+     * @throws UnsupportedOperationException Always
+     */
+    public boolean remove (String toRemove) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns true if the given String query exists within the TextFiller, false otherwise.
+     * @param query String query that we're checking for existence
+     * @return Returns true if the query exists in the TextFiller, false otherwise
+     */
+    public boolean contains (String query) {
+        State found = findQuery(normalizeTerm(query));
+        return found != null && found.wordEnd;
+    }
+
+    /**
+     * Returns the alphabetically first search term contained in the TextFiller that
+     * possesses the query as a prefix. If the given query is a prefix for NO search
+     * term, return null.
+     * @param query The String query being checked
+     * @return Returns the first search term containing the prefix of the query
+     */
+    public String textFill (String query) {
+        String prefix = normalizeTerm(query);
+        State found = findQuery(prefix);
+        // Half a surrogate pair prefixes no term, though it is a prefix of their chars
+        if (found == null || (!found.wordEnd && Character.isHighSurrogate(prefix.charAt(prefix.length() - 1)))) { return null; }
+
+        StringBuilder result = new StringBuilder(prefix);
+        while (!found.wordEnd) {
+            result.append(found.labels[0]);
+            found = found.targets[0];
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return Returns an ArrayList of Strings of the alphabetically sorted search terms within this TextFiller.
+     */
+    public List<String> getSortedList () {
+        List<String> result = new ArrayList<String>(this.size);
+        collect(this.root, new StringBuilder(), result);
+        return result;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Follows the edges spelling out the given query from the root
+     * @param query The normalized String query
+     * @return The state reached after the last character of the query, or null if absent
+     */
+    private State findQuery (String query) {
+        State current = this.root;
+        for (int i = 0; i < query.length() && current != null; i++) {
+            current = current.child(query.charAt(i));
+        }
+        return current;
+    }
+
+    /**
+     * Adds the words reachable from the given state to result in alphabetical order
+     * @param current The current state
+     * @param placeholder The characters on the path down to current
+     * @param result List the words are added to
+     */
+    private void collect (State current, StringBuilder placeholder, List<String> result) {
+        if (current.wordEnd) { result.add(placeholder.toString()); }
+        for (int i = 0; i < current.count; i++) {
+            placeholder.append(current.labels[i]);
+            collect(current.targets[i], placeholder, result);
+            placeholder.setLength(placeholder.length() - 1);
+        }
+    }
+
+    /**
+     * Minimizes the most recently added branch below the given state,
+     * replacing its last child with an equivalent registered state if one
+     * exists or registering it otherwise.
+     * @param current State whose last child is no longer on the active path
+     * @param register Canonical state for every minimized suffix seen so far
+     */
+    private static void replaceOrRegister (State current, Map<State, State> register) {
+        State child = current.lastChild();
+        if (child.count > 0) {
+            replaceOrRegister(child, register);
+        }
+        State existing = register.get(child);
+        if (existing != null) {
+            current.targets[current.count - 1] = existing;
+        } else {
+            register.put(child, child);
+        }
+    }
+
+    /**
+     * Normalizes a term to either add or search for in the graph with the same
+     * rules as TernaryTreeTextFiller's default TermNormalizer.
+     * @param s The string to sanitize
+     * @return The sanitized version of s
+     */
+    private static String normalizeTerm (String s) {
+        return TermNormalizer.DEFAULT.normalize(s);
+    }
+
+    // -----------------------------------------------------------
+    // State Internal Storage
+    // -----------------------------------------------------------
+
+    /**
+     * A node of the word graph with its outgoing edges kept in the
+     * code-point order of their labels. Two states are equal when they agree on word-end and have
+     * the same labels leading to the very same (already minimized)
+     * children, which is exactly when their suffix languages match.
+     */
+    private static class State {
+
+        boolean wordEnd;
+        char[] labels = new char[2];
+        State[] targets = new State[2];
+        int count;
+
+        State child (char c) {
+            int key = TermNormalizer.codePointOrder(c),
+                lo = 0,
+                hi = count - 1;
+            while (lo <= hi) {
+                int middle = (lo + hi) >>> 1,
+                    compare = TermNormalizer.codePointOrder(labels[middle]) - key;
+                if (compare < 0) {
+                    lo = middle + 1;
+                } else if (compare > 0) {
+                    hi = middle - 1;
+                } else {
+                    return targets[middle];
+                }
+            }
+            return null;
+        }
+
+        State lastChild () {
+            return targets[count - 1];
+        }
+
+        void append (char c, State target) {
+            if (count == labels.length) {
+                labels = Arrays.copyOf(labels, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+            }
+            labels[count] = c;
+            targets[count] = target;
+            count++;
+        }
+
+        @Override
+        public boolean equals (Object other) {
+            if (!(other instanceof State)) { return false; }
+            State s = (State) other;
+            if (s.wordEnd != wordEnd || s.count != count) { return false; }
+            for (int i = 0; i < count; i++) {
+                if (s.labels[i] != labels[i] || s.targets[i] != targets[i]) { return false; }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode () {
+            int hash = wordEnd ? 1 : 0;
+            for (int i = 0; i < count; i++) {
+                hash = 31 * hash + labels[i];
+                hash = 31 * hash + System.identityHashCode(targets[i]);
+            }
+            return hash;
+        }
+
+    }
+
+}
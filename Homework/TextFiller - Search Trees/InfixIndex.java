@@ -0,0 +1,441 @@
+package main.textfill;
+
+import java.util.*;
+
+/**
+ * A suffix array over every term of a TextFiller, answering infix
+ * queries: typing "york" finds "new york" as well as "yorkshire". All
+ * terms are laid end to end in one char array, each followed by a
+ * SEPARATOR, and every position that starts a suffix of some term is
+ * sorted by the text that follows it, so the suffixes beginning with a
+ * query form one contiguous run found by binary search. The suffix array
+ * is cut into blocks of BLOCK suffixes, and a tree of maxima over the
+ * blocks bounds the priority of every term with a suffix in each run of
+ * them. A search visits the blocks of its run best bound first and stops
+ * once no bound left can beat the results it holds, so short queries,
+ * whose runs cover much of the index, scan only a few blocks.
+ * <p>
+ * The suffix array itself is a snapshot. Changes reported through update
+ * afterwards are kept beside it instead: new priorities are patched into
+ * place, removed terms are marked, and added terms are held in a small
+ * delta whose matches are merged into every search. TernaryTreeTextFiller
+ * reports each change as it is made, and only rebuilds the index once the
+ * delta has grown to DELTA_LIMIT terms.
+ */
+public final class InfixIndex {
+
+    /**
+     * Marks the end of each term in the text; sorts before every other
+     * character, so no suffix ever runs on into the next term
+     */
+    static final char SEPARATOR = '\u0000';
+
+    /**
+     * Number of terms added or removed since the suffix array was built
+     * beyond which searches, which scan every added term, call for a rebuild
+     */
+    static final int DELTA_LIMIT = 4096;
+
+    /**
+     * Number of suffixes sharing one priority bound
+     */
+    static final int BLOCK = 32;
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final char[] text;
+    private final int[] suffixes, termStarts, priorities;
+    // Max tree over the blocks: node 1 is the root, node i has children 2i and
+    // 2i + 1, and block b is the leaf leaves + b. Each node holds at least the
+    // highest priority of any term with a suffix in its blocks.
+    private final int[] bounds;
+    private final int leaves;
+    private final TermNormalizer normalizer;
+    private final BitSet removed;
+    private final Map<String, Integer> added;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    /**
+     * Indexes every suffix of the given terms.
+     * @param terms The normalized terms, each stored once, in code-point order
+     * @param priorities The priority of each term, by position in terms
+     * @param normalizer The normalization applied to queries
+     */
+    InfixIndex (List<String> terms, int[] priorities, TermNormalizer normalizer) {
+        this.normalizer = normalizer;
+        this.priorities = priorities;
+        this.termStarts = new int[terms.size()];
+        this.removed = new BitSet(terms.size());
+        this.added = new HashMap<String, Integer>();
+
+        int length = 0;
+        for (String term : terms) {
+            length += term.length() + 1;
+        }
+        this.text = new char[length];
+        int position = 0, count = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            termStarts[i] = position;
+            term.getChars(0, term.length(), text, position);
+            position += term.length();
+            text[position++] = SEPARATOR;
+            count += term.length();
+        }
+
+        // Every position inside a term, but not the low half of a surrogate pair
+        Integer[] order = new Integer[count];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (text[i] != SEPARATOR && !Character.isLowSurrogate(text[i])) {
+                order[n++] = i;
+            }
+        }
+        Arrays.sort(order, 0, n, this::compareSuffixes);
+        this.suffixes = new int[n];
+        for (int i = 0; i < n; i++) {
+            suffixes[i] = order[i];
+        }
+        this.leaves = Integer.highestOneBit(Math.max(1, (n + BLOCK - 1) / BLOCK) * 2 - 1);
+        this.bounds = new int[2 * leaves];
+        Arrays.fill(bounds, Integer.MIN_VALUE);
+        for (int i = 0; i < n; i++) {
+            int leaf = leaves + i / BLOCK;
+            bounds[leaf] = Math.max(bounds[leaf], priorities[termOf(suffixes[i])]);
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            bounds[node] = Math.max(bounds[2 * node], bounds[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Builds the infix index of every term in the given TextFiller, along
+     * with the priority each was added with.
+     * @param source The TextFiller whose terms are indexed
+     * @return A snapshot index of source's terms
+     */
+    public static InfixIndex build (TernaryTreeTextFiller source) {
+        return source.buildInfixIndex();
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Returns up to limit terms containing the query anywhere within them,
+     * highest priority first and alphabetically among equal priorities.
+     * @param query The String being searched for inside the terms
+     * @param limit The most terms to return
+     * @return Returns the best matching terms, or an empty List if none contain the query
+     */
+    public List<String> search (String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException();
+        }
+        String normalized = normalizer.normalize(query);
+        char[] key = normalized.toCharArray();
+        int from = lowerBound(key),
+            to = upperBound(key, from);
+
+        // Keep the best limit distinct terms, worst at the head of the heap, which
+        // is small enough to check for a term already kept by scanning it. A term
+        // pushed out is passed over if met again, since the worst kept only improves.
+        PriorityQueue<Integer> best = new PriorityQueue<Integer>(limit + 1, (a, b) -> compareRank(b, a));
+        // Tree nodes overlapping the run, highest bound first
+        PriorityQueue<Integer> nodes = new PriorityQueue<Integer>((a, b) -> Integer.compare(bounds[b], bounds[a]));
+        if (from < to) {
+            nodes.add(1);
+        }
+        while (!nodes.isEmpty()) {
+            int node = nodes.poll();
+            if (best.size() == limit && bounds[node] < priorities[best.peek()]) {
+                break;
+            }
+            if (node < leaves) {
+                for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                    int first = firstSuffix(child);
+                    if (first < to && first + suffixesUnder(child) > from) {
+                        nodes.add(child);
+                    }
+                }
+                continue;
+            }
+            int start = Math.max(from, (node - leaves) * BLOCK),
+                end = Math.min(to, start - start % BLOCK + BLOCK);
+            for (int i = start; i < end; i++) {
+                int term = termOf(suffixes[i]);
+                if (best.size() == limit && compareRank(term, best.peek()) > 0) { continue; }
+                if (removed.get(term) || best.contains(term)) { continue; }
+                best.add(term);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        Integer[] ranked = best.toArray(new Integer[0]);
+        Arrays.sort(ranked, this::compareRank);
+
+        // Merge in the added terms containing the query, which are few enough to scan
+        List<Map.Entry<String, Integer>> delta = new ArrayList<Map.Entry<String, Integer>>();
+        for (Map.Entry<String, Integer> entry : added.entrySet()) {
+            if (entry.getKey().contains(normalized)) {
+                delta.add(entry);
+            }
+        }
+        delta.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? TermNormalizer.CODE_POINT_ORDER.compare(a.getKey(), b.getKey())
+                : Integer.compare(b.getValue(), a.getValue()));
+
+        List<String> result = new ArrayList<String>(Math.min(limit, ranked.length + delta.size()));
+        int i = 0, j = 0;
+        while (result.size() < limit && (i < ranked.length || j < delta.size())) {
+            boolean fromBase = j == delta.size();
+            if (i < ranked.length && !fromBase) {
+                Map.Entry<String, Integer> other = delta.get(j);
+                int p = priorities[ranked[i]];
+                fromBase = p != other.getValue()
+                        ? p > other.getValue()
+                        : compareTerm(ranked[i], other.getKey()) < 0;
+            }
+            result.add(fromBase ? termAt(ranked[i++]) : delta.get(j++).getKey());
+        }
+        return result;
+    }
+
+    /**
+     * @return Returns the number of terms indexed
+     */
+    public int size () {
+        return this.termStarts.length - this.removed.cardinality() + this.added.size();
+    }
+
+    /**
+     * @return Returns an estimate of the heap bytes held by the index's arrays
+     */
+    public long estimatedBytes () {
+        return 2L * text.length + 4L * (suffixes.length + termStarts.length + priorities.length + bounds.length);
+    }
+
+    /**
+     * Records a change to one term made after the index was built: priority
+     * changes are patched into place, and adds and removes are kept in the
+     * delta merged into every search.
+     * @param term The normalized term that changed
+     * @param stored Whether the term is now stored
+     * @param priority The term's priority, if it is stored
+     */
+    void update (String term, boolean stored, int priority) {
+        int id = find(term);
+        if (id >= 0) {
+            if (stored && priority > priorities[id]) {
+                raiseBlocks(id, priority);
+            }
+            removed.set(id, !stored);
+            priorities[id] = priority;
+        } else if (stored) {
+            added.put(term, priority);
+        } else {
+            added.remove(term);
+        }
+    }
+
+    /**
+     * Halves every term's priority the given number of times, keeping their order
+     * @param shift The number of halvings
+     */
+    void shiftPriorities (int shift) {
+        for (int i = 0; i < priorities.length; i++) {
+            priorities[i] >>= shift;
+        }
+        for (int node = 1; node < bounds.length; node++) {
+            bounds[node] >>= shift;
+        }
+        added.replaceAll((term, priority) -> priority >> shift);
+    }
+
+    /**
+     * @return Whether enough terms have been added or removed since the suffix
+     * array was built that it should be rebuilt
+     */
+    boolean stale () {
+        return added.size() + removed.cardinality() > DELTA_LIMIT;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return The first index in suffixes whose suffix is not less than key
+     */
+    private int lowerBound (char[] key) {
+        int lo = 0, hi = suffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(suffixes[mid], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return The first index from lo on whose suffix does not begin with key
+     */
+    private int upperBound (char[] key, int lo) {
+        int hi = suffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(suffixes[mid], key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compares the suffix at the given text position against key, looking no
+     * further than key's length
+     * @return Less than, equal to or greater than 0 as the suffix sorts before,
+     * begins with, or sorts after key
+     */
+    private int comparePrefix (int position, char[] key) {
+        for (int i = 0; i < key.length; i++) {
+            char c = text[position + i];
+            if (c != key[i]) {
+                return c - key[i];
+            }
+        }
+        return 0;
+    }
+
+    private int compareSuffixes (int a, int b) {
+        while (text[a] == text[b]) {
+            if (text[a] == SEPARATOR) { return 0; }
+            a++;
+            b++;
+        }
+        return text[a] - text[b];
+    }
+
+    /**
+     * Raises the priority bound of every block holding a suffix of the given
+     * term, and of the tree nodes above them
+     * @param id The term whose priority is being raised
+     * @param priority The term's new priority
+     */
+    private void raiseBlocks (int id, int priority) {
+        for (int position = termStarts[id]; text[position] != SEPARATOR; position++) {
+            if (!Character.isLowSurrogate(text[position])) {
+                for (int node = leaves + rankOf(position) / BLOCK; node > 0 && bounds[node] < priority; node >>= 1) {
+                    bounds[node] = priority;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index in suffixes of the first suffix under the given tree node
+     */
+    private int firstSuffix (int node) {
+        return (node - Integer.highestOneBit(node)) * suffixesUnder(node);
+    }
+
+    /**
+     * @return The number of suffix places under the given tree node, counting
+     * those past the end of the last block
+     */
+    private int suffixesUnder (int node) {
+        return leaves / Integer.highestOneBit(node) * BLOCK;
+    }
+
+    /**
+     * @return The index in suffixes of the suffix at the given text position. Equal
+     * suffixes keep the order of their positions, as the stable sort left them.
+     */
+    private int rankOf (int position) {
+        int lo = 0, hi = suffixes.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1,
+                compare = compareSuffixes(suffixes[mid], position);
+            if (compare == 0) {
+                compare = Integer.compare(suffixes[mid], position);
+            }
+            if (compare < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compareRank (int a, int b) {
+        if (priorities[a] != priorities[b]) {
+            return Integer.compare(priorities[b], priorities[a]);
+        }
+        return Integer.compare(a, b);
+    }
+
+    /**
+     * @return The id of the term whose text contains the given position
+     */
+    private int termOf (int position) {
+        int i = Arrays.binarySearch(termStarts, position);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * @return The id of the given normalized term in the suffix array, or -1 if
+     * it was not among the terms indexed
+     */
+    private int find (String term) {
+        int lo = 0, hi = termStarts.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1,
+                compare = compareTerm(mid, term);
+            if (compare < 0) {
+                lo = mid + 1;
+            } else if (compare > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares an indexed term against another in code-point order, the order
+     * the indexed terms are stored in
+     */
+    private int compareTerm (int id, String term) {
+        int position = termStarts[id];
+        for (int i = 0; i < term.length(); i++, position++) {
+            char c = text[position];
+            if (c == SEPARATOR) { return -1; }
+            if (c != term.charAt(i)) {
+                return TermNormalizer.codePointOrder(c) - TermNormalizer.codePointOrder(term.charAt(i));
+            }
+        }
+        return text[position] == SEPARATOR ? 0 : 1;
+    }
+
+    private String termAt (int term) {
+        int start = termStarts[term], end = start;
+        while (text[end] != SEPARATOR) {
+            end++;
+        }
+        return new String(text, start, end - start);
+    }
+
+}
@@ -0,0 +1,394 @@
+package main.textfill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A read-only TextFiller served straight out of a memory-mapped file
+ * holding an array-packed ternary search tree. The file is written once
+ * by export and can then be opened by any number of processes, which
+ * share its pages through the OS page cache instead of each rebuilding
+ * their own tree with add.
+ * <p>
+ * File layout (big-endian): a header of MAGIC, VERSION, term count and
+ * node count, followed by one NODE_BYTES record per node holding its
+ * letter, a word-end flag and the indices of its left, mid and right
+ * children (NONE when absent). Node 0 is the root, and every node comes
+ * before its children.
+ */
+public class MappedTextFiller implements TextFiller {
+
+    // -----------------------------------------------------------
+    // Format Constants
+    // -----------------------------------------------------------
+    public static final int MAGIC = 0x54544631, // "TTF1"
+                            VERSION = 1;
+
+    private static final int HEADER_BYTES = 16,
+                             NODE_BYTES = 16,
+                             CHUNK_BYTES = 64 * 1024,
+                             NONE = -1;
+
+    private static final int LETTER = 0,
+                             FLAGS = 2,
+                             LEFT = 4,
+                             MID = 8,
+                             RIGHT = 12;
+
+    private static final int[] CHILDREN = {LEFT, MID, RIGHT};
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final ByteBuffer nodes;
+    private final int size, nodeCount;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    private MappedTextFiller (ByteBuffer buffer) {
+        this.size = buffer.getInt(8);
+        this.nodeCount = buffer.getInt(12);
+        this.nodes = buffer.position(HEADER_BYTES).slice();
+    }
+
+    /**
+     * Maps the given dictionary file, as written by export, read-only
+     * into memory. The header and every child index are checked against
+     * the file's actual length first, so a truncated or corrupt file is
+     * rejected here rather than failing on some later query.
+     * @param file Path of the dictionary file
+     * @return A TextFiller answering queries from the mapped file
+     * @throws IOException If the file cannot be opened or mapped, or is
+     * not a well-formed dictionary file
+     */
+    public static MappedTextFiller open (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES) {
+                throw new IOException("Truncated dictionary file: " + length + " bytes");
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Dictionary file too large to map: " + length + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            validate(buffer, length);
+            return new MappedTextFiller(buffer);
+        }
+    }
+
+    /**
+     * Writes every term of the given TextFiller to the given file in the
+     * packed dictionary format. The tree is rebuilt balanced, picking the
+     * median letter at each level, so lookups don't depend on the order
+     * terms were originally added in. Nodes are streamed to the file a
+     * chunk at a time rather than staged as one image on the heap.
+     * @param source The TextFiller whose terms are exported
+     * @param file Path of the dictionary file to (over)write
+     * @throws IOException If the file cannot be written
+     */
+    public static void export (TextFiller source, Path file) throws IOException {
+        Packer packer = new Packer(source.getSortedList());
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.putInt(MAGIC).putInt(VERSION).putInt(packer.terms.length).putInt(packer.count);
+            for (int i = 0; i < packer.count; i++) {
+                if (out.remaining() < NODE_BYTES) {
+                    drain(out, channel);
+                }
+                out.putChar(packer.letters[i])
+                   .put((byte) (packer.wordEnds[i] ? 1 : 0))
+                   .put((byte) 0)
+                   .putInt(packer.lefts[i])
+                   .putInt(packer.mids[i])
+                   .putInt(packer.rights[i]);
+            }
+            drain(out, channel);
+        }
+    }
+
+    /**
+     * Writes out and clears whatever has been put into the given buffer.
+     */
+    private static void drain (ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Checks a mapped file's header against its length, and that every
+     * child index is either NONE or a later node of the file, which also
+     * rules out cycles since export numbers parents before their children.
+     * @throws IOException If anything in the file is out of bounds
+     */
+    private static void validate (ByteBuffer buffer, long length) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a TextFiller dictionary file");
+        }
+        int terms = buffer.getInt(8), count = buffer.getInt(12);
+        if (terms < 0 || count < 0 || HEADER_BYTES + (long) count * NODE_BYTES != length) {
+            throw new IOException("Dictionary header declares " + count + " nodes, but the file holds "
+                    + length + " bytes");
+        }
+        for (int node = 0; node < count; node++) {
+            int base = HEADER_BYTES + node * NODE_BYTES;
+            for (int field : CHILDREN) {
+                int child = buffer.getInt(base + field);
+                if (child != NONE && (child <= node || child >= count)) {
+                    throw new IOException("Node " + node + " has out of bounds child " + child);
+                }
+            }
+        }
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return Returns the number of stored terms inside of the dictionary
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * @return Returns true if the dictionary has no search terms stored, false otherwise
+     */
+    public boolean empty () {
+        return this.nodeCount == 0;
+    }
+
+    /**
+     * Mapped dictionaries are immutable; build a new one with export instead.
+     * @throws UnsupportedOperationException Always
+     */
+    public void add (String toAdd) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Mapped dictionaries are immutable; build a new one with export instead.
+     * @throws UnsupportedOperationException Always
+     */
+    public boolean remove (String toRemove) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns true if the given String query exists within the dictionary, false otherwise.
+     * @param query String query that we're checking for existence
+     * @return Returns true if the query exists in the dictionary, false otherwise
+     */
+    public boolean contains (String query) {
+        int found = findQuery(normalizeTerm(query));
+        return found != NONE && wordEnd(found);
+    }
+
+    /**
+     * Returns the alphabetically first search term contained in the dictionary that
+     * possesses the query as a prefix. If the given query is a prefix for NO search
+     * term, return null.
+     * @param query The String query being checked
+     * @return Returns the first search term containing the prefix of the query
+     */
+    public String textFill (String query) {
+        String prefix = normalizeTerm(query);
+        int found = findQuery(prefix);
+        // Half a surrogate pair prefixes no term, though it is a prefix of their chars
+        if (found == NONE || (!wordEnd(found) && Character.isHighSurrogate(letter(found)))) { return null; }
+
+        StringBuilder result = new StringBuilder(prefix);
+        while (!wordEnd(found)) {
+            // The balanced tree puts the median letter at mid, so walk to its leftmost sibling
+            found = child(found, MID);
+            while (child(found, LEFT) != NONE) {
+                found = child(found, LEFT);
+            }
+            result.append(letter(found));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return Returns an ArrayList of Strings of the alphabetically sorted search terms within the dictionary.
+     */
+    public List<String> getSortedList () {
+        List<String> result = new ArrayList<String>(this.size);
+        if (!empty()) {
+            collect(0, new StringBuilder(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns every term in the dictionary that begins with the given prefix,
+     * in alphabetical order.
+     * @param query The prefix being enumerated
+     * @return Returns the alphabetically sorted terms possessing the prefix, possibly empty
+     */
+    public List<String> getCompletions (String query) {
+        String prefix = normalizeTerm(query);
+        List<String> result = new ArrayList<String>();
+        int found = findQuery(prefix);
+        if (found == NONE) { return result; }
+
+        if (wordEnd(found)) { result.add(prefix); }
+        int mid = child(found, MID);
+        if (mid != NONE) {
+            collect(mid, new StringBuilder(prefix), result);
+        }
+        return result;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Finds the node holding the last character of the given query
+     * @param query The normalized String query
+     * @return The index of the node containing the last character of the query, or NONE
+     */
+    private int findQuery (String query) {
+        int current = empty() ? NONE : 0,
+            index = 0;
+        while (current != NONE) {
+            int compare = TermNormalizer.codePointOrder(letter(current)) - TermNormalizer.codePointOrder(query.charAt(index));
+            if (compare > 0) {
+                current = child(current, LEFT);
+            } else if (compare < 0) {
+                current = child(current, RIGHT);
+            } else if (index == query.length() - 1) {
+                return current;
+            } else {
+                current = child(current, MID);
+                index++;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds the words at and below the given node to result in alphabetical order
+     * @param current Index of the current node
+     * @param placeholder The characters on the path down to current
+     * @param result List the words are added to
+     */
+    private void collect (int current, StringBuilder placeholder, List<String> result) {
+        if (current == NONE) { return; }
+        collect(child(current, LEFT), placeholder, result);
+        placeholder.append(letter(current));
+        if (wordEnd(current)) { result.add(placeholder.toString()); }
+        collect(child(current, MID), placeholder, result);
+        placeholder.setLength(placeholder.length() - 1);
+        collect(child(current, RIGHT), placeholder, result);
+    }
+
+    private char letter (int node) {
+        return this.nodes.getChar(node * NODE_BYTES + LETTER);
+    }
+
+    private boolean wordEnd (int node) {
+        return this.nodes.get(node * NODE_BYTES + FLAGS) != 0;
+    }
+
+    private int child (int node, int field) {
+        return this.nodes.getInt(node * NODE_BYTES + field);
+    }
+
+    /**
+     * Normalizes a term to search for in the dictionary with the same
+     * rules as TernaryTreeTextFiller's default TermNormalizer.
+     * @param s The string to sanitize
+     * @return The sanitized version of s
+     */
+    private static String normalizeTerm (String s) {
+        return TermNormalizer.DEFAULT.normalize(s);
+    }
+
+    // -----------------------------------------------------------
+    // Export Support
+    // -----------------------------------------------------------
+
+    /**
+     * Lays a sorted term list out as a balanced ternary tree in parallel
+     * arrays, assigning each node its index before its children so the
+     * root lands at index 0.
+     */
+    private static class Packer {
+
+        final String[] terms;
+        char[] letters = new char[16];
+        boolean[] wordEnds = new boolean[16];
+        int[] lefts = new int[16],
+              mids = new int[16],
+              rights = new int[16];
+        int count;
+
+        Packer (List<String> source) {
+            TreeSet<String> sorted = new TreeSet<String>(TermNormalizer.CODE_POINT_ORDER);
+            for (String s : source) {
+                sorted.add(normalizeTerm(s));
+            }
+            this.terms = sorted.toArray(new String[0]);
+            pack(0, this.terms.length, 0);
+        }
+
+        /**
+         * Packs the terms in [lo, hi), which all share their first depth
+         * characters and are all longer than depth, into a subtree.
+         * @return Index of the subtree's root node, or NONE if the range is empty
+         */
+        int pack (int lo, int hi, int depth) {
+            if (lo >= hi) { return NONE; }
+
+            // Split on the letter of the median term, widened to its whole group
+            char c = terms[(lo + hi) >>> 1].charAt(depth);
+            int start = lo, end;
+            while (terms[start].charAt(depth) != c) { start++; }
+            end = start;
+            while (end < hi && terms[end].charAt(depth) == c) { end++; }
+
+            int node = allocate(c);
+            int midStart = start;
+            if (terms[start].length() == depth + 1) {
+                wordEnds[node] = true;
+                midStart++;
+            }
+            // Children may regrow the arrays, so only store into them afterwards
+            int left = pack(lo, start, depth),
+                mid = pack(midStart, end, depth + 1),
+                right = pack(end, hi, depth);
+            lefts[node] = left;
+            mids[node] = mid;
+            rights[node] = right;
+            return node;
+        }
+
+        int allocate (char c) {
+            if (count == letters.length) {
+                int grown = count * 2;
+                letters = Arrays.copyOf(letters, grown);
+                wordEnds = Arrays.copyOf(wordEnds, grown);
+                lefts = Arrays.copyOf(lefts, grown);
+                mids = Arrays.copyOf(mids, grown);
+                rights = Arrays.copyOf(rights, grown);
+            }
+            letters[count] = c;
+            return count++;
+        }
+
+    }
+
+}
@@ -0,0 +1,357 @@
+package main.textfill;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A ternary-search-tree TextFiller whose nodes live outside the Java heap,
+ * in direct ByteBuffers allocated a fixed-size chunk at a time, so that
+ * even a multi-gigabyte dictionary adds nothing for the garbage collector
+ * to trace. Nodes refer to each other by int index rather than by
+ * reference, and nodes freed by remove are reused by later adds.
+ * <p>
+ * contains allocates nothing, walking the query in place with the
+ * TermNormalizer; textFill allocates only the String it returns.
+ * Like TernaryTreeTextFiller, instances are not thread-safe.
+ */
+public class OffHeapTextFiller implements TextFiller {
+
+    // -----------------------------------------------------------
+    // Storage Layout
+    // -----------------------------------------------------------
+    private static final int NODE_BYTES = 20,
+                             CHUNK_SHIFT = 16,
+                             CHUNK_NODES = 1 << CHUNK_SHIFT,
+                             CHUNK_MASK = CHUNK_NODES - 1,
+                             NONE = -1;
+
+    private static final int LETTER = 0,
+                             WORD_END = 4,
+                             LEFT = 8,
+                             MID = 12,
+                             RIGHT = 16;
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final List<ByteBuffer> chunks;
+    private final TermNormalizer normalizer;
+    private final StringBuilder scratch;
+    private int root, size, allocated, free;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    public OffHeapTextFiller () {
+        this(TermNormalizer.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty TextFiller whose terms are folded / stripped by
+     * the given normalizer both when they are added and when they are queried.
+     * @param normalizer The normalization applied to every term
+     */
+    public OffHeapTextFiller (TermNormalizer normalizer) {
+        this.chunks = new ArrayList<ByteBuffer>();
+        this.normalizer = normalizer;
+        this.scratch = new StringBuilder();
+        this.root = this.free = NONE;
+        this.size = this.allocated = 0;
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return Returns the number of stored terms inside of the TextFiller
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * @return Returns true if the TextFiller has no search terms stored, false otherwise
+     */
+    public boolean empty () {
+        return this.root == NONE;
+    }
+
+    /**
+     * @return Returns the number of off-heap bytes reserved for nodes, including unused capacity
+     */
+    public long reservedBytes () {
+        return (long) this.chunks.size() * CHUNK_NODES * NODE_BYTES;
+    }
+
+    /**
+     * Adds the given search term toAdd to the TextFiller
+     * @param toAdd String to add to the TextFiller
+     */
+    public void add (String toAdd) {
+        if (contains(toAdd)) { return; }
+        this.root = add(this.root, toAdd, normalizer.start(toAdd), normalizer.end(toAdd));
+        this.size++;
+    }
+
+    /**
+     * Removes the given search term from the TextFiller, returning nodes that no
+     * longer lead to a stored term to the free list.
+     * @param toRemove String to remove from the TextFiller
+     * @return Returns true if the term was stored and has been removed, false otherwise
+     */
+    public boolean remove (String toRemove) {
+        if (!contains(toRemove)) { return false; }
+        this.root = remove(this.root, toRemove, normalizer.start(toRemove), normalizer.end(toRemove));
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Returns true if the given String query exists within the TextFiller, false otherwise.
+     * @param query String query that we're checking for existence in the Ternary Tree
+     * @return Returns true if the query exists in the Ternary Tree, false otherwise
+     */
+    public boolean contains (String query) {
+        int found = findQuery(query);
+        return found != NONE && wordEnd(found);
+    }
+
+    /**
+     * Returns the first search term contained in the TextFiller that possesses the query as a prefix.
+     * If the given query is a prefix for NO search term, return null.
+     * @param query The String query being checked
+     * @return Returns the first search term containing the prefix of the query
+     */
+    public String textFill (String query) {
+        int current = findQuery(query);
+        if (current == NONE) { return null; }
+
+        scratch.setLength(0);
+        normalizer.appendTo(scratch, query);
+        while (!wordEnd(current)) {
+            current = link(current, MID);
+            scratch.appendCodePoint(letter(current));
+        }
+        return scratch.toString();
+    }
+
+    /**
+     * @return Returns an ArrayList of Strings of the alphabetically sorted search terms within this TextFiller.
+     */
+    public List<String> getSortedList () {
+        return getSortedList(this.root, new StringBuilder(), new ArrayList<String>(this.size));
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Adds the code points of toAdd from index up to end below the given node
+     * @param current Index of the current node, or NONE
+     * @param toAdd The String being added to the TextFiller
+     * @param index Index in toAdd of the code point being placed
+     * @param end Index in toAdd just past its last significant code point
+     * @return Index of the root of this subtree once toAdd is added
+     */
+    private int add (int current, String toAdd, int index, int end) {
+        int letter = normalizer.codePointAt(toAdd, index),
+            next = normalizer.next(toAdd, index, end);
+
+        if (current == NONE) {
+            current = allocate(letter, next == end);
+            int last = current;
+            for (; next < end; next = normalizer.next(toAdd, next, end)) {
+                int child = allocate(normalizer.codePointAt(toAdd, next), false);
+                setLink(last, MID, child);
+                last = child;
+            }
+            setWordEnd(last, true);
+            return current;
+        }
+
+        int compare = letter(current) - letter;
+
+        if (compare == 0) {
+            if (next == end) {
+                setWordEnd(current, true);
+            } else {
+                setLink(current, MID, add(link(current, MID), toAdd, next, end));
+            }
+        }
+        if (compare > 0) {
+            setLink(current, LEFT, add(link(current, LEFT), toAdd, index, end));
+        }
+        if (compare < 0) {
+            setLink(current, RIGHT, add(link(current, RIGHT), toAdd, index, end));
+        }
+        return current;
+    }
+
+    /**
+     * Removes the code points of toRemove from index up to end below the given node
+     * @param current Index of the current node
+     * @param toRemove The String being removed, known to be stored
+     * @param index Index in toRemove of the code point being matched
+     * @param end Index in toRemove just past its last significant code point
+     * @return Index of the root of this subtree once toRemove is gone, or NONE
+     */
+    private int remove (int current, String toRemove, int index, int end) {
+        int compare = letter(current) - normalizer.codePointAt(toRemove, index);
+
+        if (compare == 0) {
+            int next = normalizer.next(toRemove, index, end);
+            if (next == end) {
+                setWordEnd(current, false);
+            } else {
+                setLink(current, MID, remove(link(current, MID), toRemove, next, end));
+            }
+            if (!wordEnd(current) && link(current, MID) == NONE) {
+                return unlink(current);
+            }
+        }
+        if (compare > 0) {
+            setLink(current, LEFT, remove(link(current, LEFT), toRemove, index, end));
+        }
+        if (compare < 0) {
+            setLink(current, RIGHT, remove(link(current, RIGHT), toRemove, index, end));
+        }
+        return current;
+    }
+
+    /**
+     * Removes the given dead node from the binary tree of its siblings, replacing it
+     * with its in-order successor if it has two children, and frees it.
+     * @param dead Index of the node being removed
+     * @return Index of the node that takes dead's place, or NONE
+     */
+    private int unlink (int dead) {
+        int left = link(dead, LEFT),
+            right = link(dead, RIGHT),
+            replacement;
+        if (left == NONE) {
+            replacement = right;
+        } else if (right == NONE) {
+            replacement = left;
+        } else {
+            replacement = right;
+            while (link(replacement, LEFT) != NONE) {
+                replacement = link(replacement, LEFT);
+            }
+            setLink(replacement, RIGHT, removeLeftmost(right));
+            setLink(replacement, LEFT, left);
+        }
+        release(dead);
+        return replacement;
+    }
+
+    private int removeLeftmost (int current) {
+        if (link(current, LEFT) == NONE) { return link(current, RIGHT); }
+        setLink(current, LEFT, removeLeftmost(link(current, LEFT)));
+        return current;
+    }
+
+    /**
+     * Finds the node holding the last code point of the query, walking the query in place
+     * @param query The String query
+     * @return Index of the node containing the last code point of the query, or NONE
+     */
+    private int findQuery (String query) {
+        int end = normalizer.end(query),
+            current = this.root;
+        for (int index = normalizer.start(query); current != NONE; ) {
+            int compare = letter(current) - normalizer.codePointAt(query, index);
+            if (compare > 0) {
+                current = link(current, LEFT);
+            } else if (compare < 0) {
+                current = link(current, RIGHT);
+            } else {
+                index = normalizer.next(query, index, end);
+                if (index == end) { return current; }
+                current = link(current, MID);
+            }
+        }
+        return NONE;
+    }
+
+    private List<String> getSortedList (int current, StringBuilder placeholder, List<String> result) {
+        if (current == NONE) { return result; }
+        getSortedList(link(current, LEFT), placeholder, result);
+        int mark = placeholder.length();
+        placeholder.appendCodePoint(letter(current));
+        if (wordEnd(current)) { result.add(placeholder.toString()); }
+        getSortedList(link(current, MID), placeholder, result);
+        placeholder.setLength(mark);
+        getSortedList(link(current, RIGHT), placeholder, result);
+        return result;
+    }
+
+    // -----------------------------------------------------------
+    // Node Storage
+    // -----------------------------------------------------------
+
+    /**
+     * Takes a node from the free list, or from the end of the last chunk,
+     * adding a new chunk when that is full.
+     * @return Index of a node holding the given letter, with no links
+     */
+    private int allocate (int letter, boolean wordEnd) {
+        int node;
+        if (this.free != NONE) {
+            node = this.free;
+            this.free = link(node, MID);
+        } else {
+            if (this.allocated == this.chunks.size() * CHUNK_NODES) {
+                this.chunks.add(ByteBuffer.allocateDirect(CHUNK_NODES * NODE_BYTES));
+            }
+            node = this.allocated++;
+        }
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        chunk.putInt(offset + LETTER, letter);
+        chunk.putInt(offset + WORD_END, wordEnd ? 1 : 0);
+        chunk.putInt(offset + LEFT, NONE);
+        chunk.putInt(offset + MID, NONE);
+        chunk.putInt(offset + RIGHT, NONE);
+        return node;
+    }
+
+    /**
+     * Returns the given node to the free list, chained through its mid link
+     */
+    private void release (int node) {
+        setLink(node, MID, this.free);
+        this.free = node;
+    }
+
+    private ByteBuffer chunk (int node) {
+        return this.chunks.get(node >>> CHUNK_SHIFT);
+    }
+
+    private int offset (int node) {
+        return (node & CHUNK_MASK) * NODE_BYTES;
+    }
+
+    private int letter (int node) {
+        return chunk(node).getInt(offset(node) + LETTER);
+    }
+
+    private boolean wordEnd (int node) {
+        return chunk(node).getInt(offset(node) + WORD_END) != 0;
+    }
+
+    private void setWordEnd (int node, boolean wordEnd) {
+        chunk(node).putInt(offset(node) + WORD_END, wordEnd ? 1 : 0);
+    }
+
+    private int link (int node, int field) {
+        return chunk(node).getInt(offset(node) + field);
+    }
+
+    private void setLink (int node, int field, int target) {
+        chunk(node).putInt(offset(node) + field, target);
+    }
+
+}
@@ -0,0 +1,353 @@
+package main.textfill;
+
+import java.util.*;
+
+/**
+ * A compressed ternary-search-tree TextFiller in which every chain of
+ * single-child mid references is collapsed into one node carrying the
+ * whole run of characters as its label, the way a radix (Patricia) tree
+ * compresses a trie. Siblings are still kept in a binary tree ordered
+ * by the first code point of their labels, so lookups, textFill and
+ * sorted enumeration behave exactly as in TernaryTreeTextFiller, while
+ * long multi-word phrases take one node per branch point instead of one
+ * node per character.
+ */
+public class RadixTextFiller implements TextFiller {
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private RNode root;
+    private int size;
+    private final TermNormalizer normalizer;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    public RadixTextFiller () {
+        this(TermNormalizer.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty TextFiller whose terms are folded / stripped by
+     * the given normalizer both when they are added and when they are queried.
+     * @param normalizer The normalization applied to every term
+     */
+    public RadixTextFiller (TermNormalizer normalizer) {
+        this.root = null;
+        this.size = 0;
+        this.normalizer = normalizer;
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @return Returns the number of stored terms inside of the TextFiller
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * @return Returns true if the TextFiller has no search terms stored, false otherwise
+     */
+    public boolean empty () {
+        return this.root == null;
+    }
+
+    /**
+     * @return Returns the number of nodes in the compressed tree, for comparison
+     * against the one-node-per-character TernaryTreeTextFiller
+     */
+    public int nodeCount () {
+        return nodeCount(this.root);
+    }
+
+    /**
+     * Adds the given search term toAdd to the TextFiller
+     * @param toAdd String to add to the TextFiller
+     */
+    public void add (String toAdd) {
+        if (contains(toAdd)) { return; }
+        this.root = add(this.root, normalizer.normalize(toAdd), 0);
+        this.size++;
+    }
+
+    /**
+     * Removes the given search term from the TextFiller, pruning nodes that no
+     * longer lead to a stored term and re-merging labels left with a single child.
+     * @param toRemove String to remove from the TextFiller
+     * @return Returns true if the term was stored and has been removed, false otherwise
+     */
+    public boolean remove (String toRemove) {
+        if (!contains(toRemove)) { return false; }
+        this.root = remove(this.root, normalizer.normalize(toRemove), 0);
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Returns true if the given String query exists within the TextFiller, false otherwise.
+     * @param query String query that we're checking for existence in the tree
+     * @return Returns true if the query exists in the tree, false otherwise
+     */
+    public boolean contains (String query) {
+        String key = normalizer.normalize(query);
+        Match match = findQuery(key);
+        return match != null && match.offset == match.node.label.length() && match.node.wordEnd;
+    }
+
+    /**
+     * Returns the first search term contained in the TextFiller that possesses the query as a prefix.
+     * If the given query is a prefix for NO search term, return null.
+     * @param query The String query being checked
+     * @return Returns the first search term containing the prefix of the query
+     */
+    public String textFill (String query) {
+        String key = normalizer.normalize(query);
+        Match match = findQuery(key);
+        if (match == null) { return null; }
+
+        RNode current = match.node;
+        StringBuilder result = new StringBuilder(key).append(current.label, match.offset, current.label.length());
+        while (!current.wordEnd) {
+            current = current.mid;
+            result.append(current.label);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return Returns an ArrayList of Strings of the alphabetically sorted search terms within this TextFiller.
+     */
+    public List<String> getSortedList () {
+        return getSortedList(this.root, new StringBuilder(), new ArrayList<String>());
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Adds the normalized key from index on below the given node, splitting a
+     * label in two where the key leaves it part way through.
+     * @param current The current RNode
+     * @param key The normalized String being added, known not to be stored
+     * @param index Index in key of the first character not yet placed
+     * @return A reference to the root of this subtree once key is added
+     */
+    private RNode add (RNode current, String key, int index) {
+        if (current == null) {
+            return new RNode(key.substring(index), true, null);
+        }
+
+        int compare = current.label.codePointAt(0) - key.codePointAt(index);
+
+        if (compare == 0) {
+            int common = commonPrefix(current.label, key, index);
+            if (common < current.label.length()) {
+                current.mid = new RNode(current.label.substring(common), current.wordEnd, current.mid);
+                current.label = current.label.substring(0, common);
+                current.wordEnd = false;
+            }
+            if (index + common == key.length()) {
+                current.wordEnd = true;
+            } else {
+                current.mid = add(current.mid, key, index + common);
+            }
+        }
+        if (compare > 0) {
+            current.left = add(current.left, key, index);
+        }
+        if (compare < 0) {
+            current.right = add(current.right, key, index);
+        }
+        return current;
+    }
+
+    /**
+     * Removes the normalized key from index on below the given node.
+     * @param current The current RNode
+     * @param key The normalized String being removed, known to be stored
+     * @param index Index in key of the first character not yet matched
+     * @return A reference to the root of this subtree once key is removed, possibly null
+     */
+    private RNode remove (RNode current, String key, int index) {
+        int compare = current.label.codePointAt(0) - key.codePointAt(index);
+
+        if (compare == 0) {
+            int next = index + current.label.length();
+            if (next == key.length()) {
+                current.wordEnd = false;
+            } else {
+                current.mid = remove(current.mid, key, next);
+            }
+            return compact(current);
+        }
+        if (compare > 0) {
+            current.left = remove(current.left, key, index);
+        }
+        if (compare < 0) {
+            current.right = remove(current.right, key, index);
+        }
+        return current;
+    }
+
+    /**
+     * Restores the compressed shape at a node whose word-end or mid subtree just changed:
+     * a node leading nowhere is unlinked from its siblings, and a node that is not a
+     * word-end but has exactly one child absorbs that child's label.
+     * @param current The RNode to compact
+     * @return The node that takes current's place, possibly null
+     */
+    private RNode compact (RNode current) {
+        if (!current.wordEnd && current.mid == null) {
+            return unlink(current);
+        }
+        RNode only = current.mid;
+        if (!current.wordEnd && only.left == null && only.right == null) {
+            current.label = current.label + only.label;
+            current.wordEnd = only.wordEnd;
+            current.mid = only.mid;
+        }
+        return current;
+    }
+
+    /**
+     * Removes the given dead node from the binary tree of its siblings,
+     * replacing it with its in-order successor if it has two children.
+     * @param dead The node being removed
+     * @return The node that takes dead's place, possibly null
+     */
+    private RNode unlink (RNode dead) {
+        if (dead.left == null) { return dead.right; }
+        if (dead.right == null) { return dead.left; }
+
+        RNode successor = dead.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        successor.right = removeLeftmost(dead.right);
+        successor.left = dead.left;
+        return successor;
+    }
+
+    private RNode removeLeftmost (RNode current) {
+        if (current.left == null) { return current.right; }
+        current.left = removeLeftmost(current.left);
+        return current;
+    }
+
+    /**
+     * Finds where the normalized key ends in the tree
+     * @param key The normalized String query
+     * @return The node and label offset just past the key's last character, or null if absent
+     */
+    private Match findQuery (String key) {
+        RNode current = this.root;
+        int index = 0;
+        while (current != null) {
+            int compare = current.label.codePointAt(0) - key.codePointAt(index);
+            if (compare > 0) {
+                current = current.left;
+            } else if (compare < 0) {
+                current = current.right;
+            } else {
+                int common = commonPrefix(current.label, key, index);
+                if (index + common == key.length()) {
+                    return new Match(current, common);
+                }
+                if (common < current.label.length()) {
+                    return null;
+                }
+                index += common;
+                current = current.mid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param label A node's label
+     * @param key The normalized key being matched
+     * @param index Index in key at which label is compared
+     * @return The length of the longest common prefix of label and key from index,
+     * never ending between the two halves of a surrogate pair
+     */
+    private int commonPrefix (String label, String key, int index) {
+        int common = 0;
+        while (common < label.length() && index + common < key.length()
+                && label.charAt(common) == key.charAt(index + common)) {
+            common++;
+        }
+        if (common < label.length() && Character.isHighSurrogate(label.charAt(common - 1))) {
+            common--;
+        }
+        return common;
+    }
+
+    /**
+     * Returns a List of the words in the TextFiller sorted in alphabetical order
+     * @param current The current RNode
+     * @param placeholder Collects the labels on the path to form words in the TextFiller
+     * @param result Returned List of the words in the TextFiller
+     * @return result The List of words in the TextFiller
+     */
+    private List<String> getSortedList (RNode current, StringBuilder placeholder, List<String> result) {
+        if (current == null) { return result; }
+        getSortedList(current.left, placeholder, result);
+        int mark = placeholder.length();
+        placeholder.append(current.label);
+        if (current.wordEnd) { result.add(placeholder.toString()); }
+        getSortedList(current.mid, placeholder, result);
+        placeholder.setLength(mark);
+        getSortedList(current.right, placeholder, result);
+        return result;
+    }
+
+    private int nodeCount (RNode current) {
+        if (current == null) { return 0; }
+        return 1 + nodeCount(current.left) + nodeCount(current.mid) + nodeCount(current.right);
+    }
+
+    // -----------------------------------------------------------
+    // RNode Internal Storage
+    // -----------------------------------------------------------
+
+    /**
+     * A node of the compressed tree, labelled with one or more normalized
+     * characters; its siblings are ordered by their labels' first code point.
+     */
+    private static class RNode {
+
+        String label;
+        boolean wordEnd;
+        RNode left, mid, right;
+
+        RNode (String label, boolean wordEnd, RNode mid) {
+            this.label = label;
+            this.wordEnd = wordEnd;
+            this.mid = mid;
+        }
+
+    }
+
+    /**
+     * The node at which a key ends, and how far into its label it ends
+     */
+    private static class Match {
+
+        final RNode node;
+        final int offset;
+
+        Match (RNode node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+
+    }
+
+}
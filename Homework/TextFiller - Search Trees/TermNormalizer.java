@@ -0,0 +1,224 @@
+package main.textfill;
+
+import java.text.Normalizer;
+import java.util.Comparator;
+
+/**
+ * Normalizes search terms one code point at a time, directly out of the
+ * caller's String, so that trees can be walked during add and query
+ * without building trimmed or lower-cased copies first.
+ * <p>
+ * Leading and trailing whitespace is ignored; spaces in the middle are
+ * kept so that multi-word phrases can still be stored. Optionally, case
+ * is folded (so that, e.g., upper, lower and final-form sigma all match) and
+ * accents are stripped, both of which work on full code points, so
+ * supplementary characters are never split.
+ * <p>
+ * Typical use walks the significant code points of a term like so:
+ * <pre>
+ *   for (int i = n.start(s), end = n.end(s); i &lt; end; i = n.next(s, i, end)) {
+ *       int cp = n.codePointAt(s, i);
+ *       ...
+ *   }
+ * </pre>
+ */
+public final class TermNormalizer {
+
+    /**
+     * Case-folding, accent-preserving normalization used by default
+     */
+    public static final TermNormalizer DEFAULT = new TermNormalizer(true, false);
+
+    /**
+     * Orders normalized terms by code point, as TernaryTreeTextFiller sorts them,
+     * rather than by UTF-16 char as String.compareTo does
+     */
+    static final Comparator<String> CODE_POINT_ORDER = (s1, s2) -> {
+        for (int i = 0, n = Math.min(s1.length(), s2.length()); i < n; i++) {
+            char c1 = s1.charAt(i), c2 = s2.charAt(i);
+            if (c1 != c2) { return codePointOrder(c1) - codePointOrder(c2); }
+        }
+        return s1.length() - s2.length();
+    };
+
+    /**
+     * Base letter of every precomposed code point below its length,
+     * computed once so that accent stripping never allocates per call;
+     * runs through Latin Extended Additional and Greek Extended (up to
+     * U+1FFF), so that, e.g., Vietnamese letters fold as well
+     */
+    private static final int[] BASE = new int[0x2000];
+
+    static {
+        for (int cp = 0; cp < BASE.length; cp++) {
+            BASE[cp] = cp;
+            String decomposed = Normalizer.normalize(new String(Character.toChars(cp)), Normalizer.Form.NFD);
+            if (decomposed.length() > 1 && isMark(decomposed.codePointAt(decomposed.length() - 1))) {
+                BASE[cp] = decomposed.codePointAt(0);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final boolean foldCase, stripAccents;
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    /**
+     * @param foldCase Whether terms differing only in case are treated as the same term
+     * @param stripAccents Whether accented letters are treated as their unaccented base letters
+     */
+    public TermNormalizer (boolean foldCase, boolean stripAccents) {
+        this.foldCase = foldCase;
+        this.stripAccents = stripAccents;
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Returns the index of the first significant code point of s, since we
+     * do not want to allow null, empty or all-whitespace terms.
+     * @param s The term being walked
+     * @return The index of the first code point that isn't leading whitespace
+     */
+    public int start (CharSequence s) {
+        int i = s == null ? -1 : firstSignificant(s);
+        if (i < 0) {
+            throw new IllegalArgumentException();
+        }
+        return i;
+    }
+
+    /**
+     * @param s The term being checked
+     * @return Whether s is null or holds nothing but whitespace and skipped code
+     * points, and so would be rejected by start
+     */
+    public boolean isBlank (CharSequence s) {
+        return s == null || firstSignificant(s) < 0;
+    }
+
+    /**
+     * @param s The term being walked
+     * @return The index just past the last code point of s that isn't trailing whitespace
+     */
+    public int end (CharSequence s) {
+        int end = s.length();
+        while (end > 0 && isSpace(s.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * @param s The term being walked
+     * @param index Index of a significant code point, as returned by start or next
+     * @param end The term's end, as returned by end
+     * @return The index of the significant code point following the one at index, or end
+     */
+    public int next (CharSequence s, int index, int end) {
+        index += Character.charCount(Character.codePointAt(s, index));
+        while (index < end && skipped(Character.codePointAt(s, index))) {
+            index += Character.charCount(Character.codePointAt(s, index));
+        }
+        return index;
+    }
+
+    /**
+     * @param s The term being walked
+     * @param index Index of a significant code point, as returned by start or next
+     * @return The normalized form of the code point at index
+     */
+    public int codePointAt (CharSequence s, int index) {
+        return normalize(Character.codePointAt(s, index));
+    }
+
+    /**
+     * @param cp A single code point
+     * @return The normalized form of cp
+     */
+    public int normalize (int cp) {
+        if (stripAccents && cp < BASE.length) {
+            cp = BASE[cp];
+        }
+        if (foldCase) {
+            cp = Character.toLowerCase(Character.toUpperCase(cp));
+        }
+        return cp;
+    }
+
+    /**
+     * Appends the normalized form of s to the given builder
+     * @param sb The builder to append to
+     * @param s The term to normalize
+     * @return sb, for chaining
+     */
+    public StringBuilder appendTo (StringBuilder sb, CharSequence s) {
+        for (int i = start(s), end = end(s); i < end; i = next(s, i, end)) {
+            sb.appendCodePoint(codePointAt(s, i));
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the normalized form of s as a new String; prefer walking s
+     * with start / next / codePointAt where the String itself isn't needed.
+     * @param s The term to normalize
+     * @return The normalized version of s
+     */
+    public String normalize (String s) {
+        return appendTo(new StringBuilder(s == null ? 0 : s.length()), s).toString();
+    }
+
+    /**
+     * Returns a sort key for one char of a term that orders like the code point it
+     * encodes or begins: surrogates are moved above the rest of the BMP, so that
+     * trees keyed by char sort supplementary characters as code-point trees do.
+     * @param c A char of a normalized term
+     * @return A key comparing between chars as their code points compare
+     */
+    static int codePointOrder (char c) {
+        if (c < Character.MIN_SURROGATE) { return c; }
+        return c <= Character.MAX_SURROGATE ? c + 0x2000 : c - 0x800;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * @param s The term being walked, not null
+     * @return The index of the first significant code point of s, or -1 if there is none
+     */
+    private int firstSignificant (CharSequence s) {
+        int end = end(s), i = 0;
+        while (i < end && (isSpace(s.charAt(i)) || skipped(Character.codePointAt(s, i)))) {
+            i += Character.charCount(Character.codePointAt(s, i));
+        }
+        return i < end ? i : -1;
+    }
+
+    /**
+     * @param cp A code point in the term
+     * @return Whether cp is dropped entirely, as combining accents are when stripping them
+     */
+    private boolean skipped (int cp) {
+        return stripAccents && isMark(cp);
+    }
+
+    private static boolean isSpace (char c) {
+        return c <= ' ' || Character.isWhitespace(c);
+    }
+
+    private static boolean isMark (int cp) {
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK;
+    }
+
+}
@@ -1,6 +1,11 @@
 package main.textfill;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 import org.w3c.dom.Node;
 
@@ -13,18 +18,39 @@ import tree.bst.BinarySearchTree.BSTNode;
  */
 public class TernaryTreeTextFiller implements TextFiller {
 
+    /**
+     * Nodes a shape walk visits between checks on whether to give up
+     */
+    static final int SHAPE_CHECK_NODES = 4096;
+
     // -----------------------------------------------------------
     // Fields
     // -----------------------------------------------------------
     private TTNode root;
     private int size;
+    private final TermNormalizer normalizer;
+    private PrefixCache cache;
+    private boolean infixEnabled;
+    private InfixIndex infix;
+    private TextFillerMetrics metrics;
+    private volatile FeedbackRanking feedback;
     
     // -----------------------------------------------------------
     // Constructor
     // -----------------------------------------------------------
     public TernaryTreeTextFiller () {
+        this(TermNormalizer.DEFAULT);
+    }
+    
+    /**
+     * Constructs an empty TextFiller whose terms are folded / stripped by
+     * the given normalizer both when they are added and when they are queried.
+     * @param normalizer The normalization applied to every term
+     */
+    public TernaryTreeTextFiller (TermNormalizer normalizer) {
         this.root = null;
         this.size = 0;
+        this.normalizer = normalizer;
     }
     
     
@@ -52,10 +78,26 @@ public class TernaryTreeTextFiller implements TextFiller {
      * @param toAdd String to add to the TextFiller
      */
     public void add (String toAdd) {
-        normalizeTerm(toAdd);
         if (contains(toAdd)) { return; }
-        this.root = add(this.root, toAdd);
+        if (this.metrics != null) { this.metrics.treeChanging(); }
+        this.root = add(this.root, toAdd, normalizer.start(toAdd), normalizer.end(toAdd), 0);
         this.size++;
+        termChanged(toAdd, true, 0);
+    }
+    
+    /**
+     * Removes the given search term from the TextFiller, pruning any nodes
+     * that no longer lead to a stored term.
+     * @param toRemove String to remove from the TextFiller
+     * @return Returns true if the term was stored and has been removed, false otherwise
+     */
+    public boolean remove (String toRemove) {
+        if (!contains(toRemove)) { return false; }
+        if (this.metrics != null) { this.metrics.treeChanging(); }
+        this.root = remove(this.root, toRemove, normalizer.start(toRemove), normalizer.end(toRemove));
+        this.size--;
+        termChanged(toRemove, false, 0);
+        return true;
     }
     
     /**
@@ -64,7 +106,8 @@ public class TernaryTreeTextFiller implements TextFiller {
      * @return Returns true if the query exists in the Ternary Tree, false otherwise
      */
     public boolean contains (String query) {
-        return contains(this.root, query);       
+        TTNode found = findQuery(this.root, query);
+        return found != null && found.wordEnd;
     }
     
     /**
@@ -74,14 +117,18 @@ public class TernaryTreeTextFiller implements TextFiller {
      * @return Returns the first search term containing the prefix of the query
      */
     public String textFill (String query) {
-        return textFill(this.root, query);
+        if (this.metrics == null) { return textFillLookup(query); }
+        long started = System.nanoTime(), allocated = this.metrics.allocatedBytes();
+        String result = textFillLookup(query);
+        this.metrics.textFill.record(System.nanoTime() - started, this.metrics.allocatedBytes() - allocated);
+        return result;
     }
     
     /**
      * @return Returns an ArrayList of Strings of the alphabetically sorted search terms within this TextFiller.
      */
     public List<String> getSortedList () {
-        return getSortedList(this.root, "", new ArrayList<String>());
+        return getSortedList(this.root, new StringBuilder(), new ArrayList<String>());
     }
         
     // -----------------------------------------------------------
@@ -89,169 +136,272 @@ public class TernaryTreeTextFiller implements TextFiller {
     // -----------------------------------------------------------
 
     /**
-     * Adds given String toAdd to the TextFiller
+     * Answers textFill from the prefix cache if enabled, or from the tree otherwise
+     * @param query The String query being completed
+     * @return Return a String of the first search term that possesses the query as a prefix, or null
+     */
+    private String textFillLookup (String query) {
+        if (this.cache != null) { return this.cache.lookup(query).fill; }
+        return textFill(findQuery(this.root, query), query);
+    }
+
+    /**
+     * Completes the given query by following mid references down to the first word-end.
+     * @param current The TTNode holding the last code point of the query, or null if there is none
+     * @param query The String query being completed
+     * @return Return a String of the first search term that possesses the query as a prefix, or null
+     */
+    private String textFill (TTNode current, String query) {
+        if (current == null) { return null; }
+        
+        StringBuilder result = normalizer.appendTo(new StringBuilder(), query);
+        while (!current.wordEnd) {
+            current = current.mid;
+            result.appendCodePoint(current.letter);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Adds the code points of toAdd from index up to end to the TextFiller
+     * with the given priority, walking toAdd in place rather than taking substrings.
      * @param current The current TTNode
      * @param toAdd The String being added to the TextFiller
+     * @param index Index in toAdd of the code point being placed
+     * @param end Index in toAdd just past its last significant code point
+     * @param priority The int priority of the String
      * @return A reference to the Node containing the recently added String toAdd
      */
-    private TTNode add (TTNode current, String toAdd) {
+    private TTNode add (TTNode current, String toAdd, int index, int end, int priority) {
+        int letter = normalizer.codePointAt(toAdd, index),
+            next = normalizer.next(toAdd, index, end);
+        
         if (current == null) {
-            current = new TTNode(toAdd.charAt(0), toAdd.length() == 1, 0);
-            addString(current, toAdd.substring(1));
+            current = new TTNode(letter, next == end, priority);
+            addString(current, toAdd, next, end, priority);
             return current;
         } 
         
-        int compare = compareChars(current.letter, toAdd.charAt(0));
+        int compare = compareChars(current.letter, letter);
         
         if (compare == 0) {
-            if (toAdd.length() == 1) {
+            if (next == end) {
                 current.wordEnd = true;
+                current.wordEndPriority = priority;
             } else {
-                current.mid = add(current.mid, toAdd.substring(1));
+                current.mid = add(current.mid, toAdd, next, end, priority);
             }
         }
         if (compare > 0) {
-            current.left = add(current.left, toAdd);
+            current.left = add(current.left, toAdd, index, end, priority);
         }
         if (compare < 0) {
-            current.right = add(current.right, toAdd);
+            current.right = add(current.right, toAdd, index, end, priority);
         }
+        updatePriority(current);
         return current;
     }
-     
+    
     /**
-     * Returns true if the TextFiller contains the query word, false otherwise
+     * Removes the code points of toRemove from index up to end from the TextFiller,
+     * unlinking any node left with neither a word-end nor a mid subtree.
      * @param current The current TTNode
-     * @param query The String query being checked
-     * @return Returns true if the TextFiller contains the query word, false otherwise
+     * @param toRemove The String being removed, known to be stored
+     * @param index Index in toRemove of the code point being matched
+     * @param end Index in toRemove just past its last significant code point
+     * @return The root of this subtree once toRemove is gone, possibly null
      */
-    private boolean contains (TTNode current, String query) {
-       current = findQuery(this.root, query);
-       return current != null && current.wordEnd;
+    private TTNode remove (TTNode current, String toRemove, int index, int end) {
+        int compare = compareChars(current.letter, normalizer.codePointAt(toRemove, index));
+        
+        if (compare == 0) {
+            int next = normalizer.next(toRemove, index, end);
+            if (next == end) {
+                current.wordEnd = false;
+                current.wordEndPriority = 0;
+            } else {
+                current.mid = remove(current.mid, toRemove, next, end);
+            }
+            if (!current.wordEnd && current.mid == null) {
+                return unlink(current);
+            }
+        }
+        if (compare > 0) {
+            current.left = remove(current.left, toRemove, index, end);
+        }
+        if (compare < 0) {
+            current.right = remove(current.right, toRemove, index, end);
+        }
+        updatePriority(current);
+        return current;
     }
     
     /**
-     * Adds the given String toAdd to the TextFiller down the middle references of the given TTNode current
-     * @param current The current TTNode
-     * @param toAdd The String being added to the TextFiller
+     * Removes the given dead node from the binary tree of its siblings,
+     * replacing it with its in-order successor if it has two children.
+     * @param dead The node being removed
+     * @return The node that takes dead's place, possibly null
      */
-    private void addString(TTNode current, String toAdd) {
-        char[] word = toAdd.toCharArray();
-        for (char c : word) {
-            current.mid = new TTNode(c, false, 0);
-            current = current.mid;
+    private TTNode unlink (TTNode dead) {
+        if (dead.left == null) { return dead.right; }
+        if (dead.right == null) { return dead.left; }
+        
+        TTNode successor = dead.right;
+        while (successor.left != null) {
+            successor = successor.left;
         }
-        current.wordEnd = true;
+        successor.right = removeLeftmost(dead.right);
+        successor.left = dead.left;
+        updatePriority(successor);
+        return successor;
     }
     
     /**
-     * Returns the first search term contained in the TextFiller that possesses the given prefix.
+     * Detaches the leftmost node of the binary tree of siblings rooted at current
      * @param current The current TTNode
-     * @param prefix The String prefix being checked
-     * @return Return a String of the first search term contained in the TextFiller that possesses the given prefix.
+     * @return The root of this subtree without its leftmost node
      */
-    private String textFill(TTNode current, String prefix) {       
-        if (contains(normalizeTerm(prefix))) { return prefix; }  
-        
-        current = findQuery(current, prefix);
-        
-        if (current == null) { return null; }
-        
-        String suffix = "";
-        while (!current.wordEnd) {
+    private TTNode removeLeftmost (TTNode current) {
+        if (current.left == null) { return current.right; }
+        current.left = removeLeftmost(current.left);
+        updatePriority(current);
+        return current;
+    }
+    
+    /**
+     * Recomputes the priority of the given node as the highest priority of any
+     * word ending at or below it, left and right included, assuming its
+     * children are already up to date.
+     * @param current The TTNode to repair
+     */
+    private void updatePriority (TTNode current) {
+        int max = current.wordEnd ? current.wordEndPriority : Integer.MIN_VALUE;
+        if (current.left != null)  { max = Math.max(max, current.left.priority); }
+        if (current.mid != null)   { max = Math.max(max, current.mid.priority); }
+        if (current.right != null) { max = Math.max(max, current.right.priority); }
+        current.priority = max;
+    }
+    
+    /**
+     * Adds the code points of toAdd from index up to end down the middle references
+     * of the given TTNode current
+     * @param current The current TTNode
+     * @param toAdd The String being added to the TextFiller
+     * @param index Index in toAdd of the first code point to add below current
+     * @param end Index in toAdd just past its last significant code point
+     * @param priority The int priority associated with the added word
+     */
+    private void addString (TTNode current, String toAdd, int index, int end, int priority) {
+        for (; index < end; index = normalizer.next(toAdd, index, end)) {
+            current.mid = new TTNode(normalizer.codePointAt(toAdd, index), false, priority);
+            current.priority = priority;
             current = current.mid;
-            suffix += current.letter;
         }
-        return prefix + suffix;
+        current.wordEnd = true;
+        current.wordEndPriority = priority;
+        current.priority = priority;
     }
     
     /**
      * Finds the String query in the TextFiller
      * @param current The current TTNode
-     * @param query The String query whose last character is contained in the node returned
-     * @return The node containing the last character of the String query
+     * @param query The String query whose last code point is contained in the node returned
+     * @return The node containing the last code point of the String query
      */
-    private TTNode findQuery(TTNode current, String query) {
-        normalizeTerm(query);
-        if (current == null) { return null; }
-        
-        int compare = compareChars(current.letter, query.charAt(0));
-
-        if (compare == 0) {
-            if (query.length() == 1) {
-                return current;
-            }             
-            return findQuery(current.mid, query.substring(1));            
-        }
-        if (compare > 0) {
-            return findQuery(current.left, query);
-        }
-        if (compare < 0) {
-            return findQuery(current.right, query);
+    private TTNode findQuery (TTNode current, String query) {
+        int index = normalizer.start(query),
+            end = normalizer.end(query),
+            visited = 0;
+        while (current != null) {
+            visited++;
+            int compare = compareChars(current.letter, normalizer.codePointAt(query, index));
+            if (compare > 0) {
+                current = current.left;
+            } else if (compare < 0) {
+                current = current.right;
+            } else {
+                index = normalizer.next(query, index, end);
+                if (index == end) { break; }
+                current = current.mid;
+            }
         }
-        return null;
+        if (this.metrics != null) { this.metrics.queried(visited); }
+        return current;
     }
        
     /**
      * Returns a List of the words in the TextFiller sorted in alphabetical order
      * @param current The current TTNode
-     * @param placeholder String placeholder that collects the chars in each node to form words in the TextFiller 
+     * @param placeholder Collects the code points in each node to form words in the TextFiller 
      * @param result Returned List of the words in the TextFiller
      * @return result The List of words in the TextFiller
      **/
-     private List<String> getSortedList(TTNode current, String placeholder, List<String> result) {        
+     private List<String> getSortedList (TTNode current, StringBuilder placeholder, List<String> result) {        
          if (current == null) { return result; }        
-         result = getSortedList(current.left, placeholder, result);
-         if (current.wordEnd) { result.add(placeholder + current.letter); }
-         result = getSortedList(current.mid, placeholder + current.letter, result);
-         result = getSortedList(current.right, placeholder, result);
+         getSortedList(current.left, placeholder, result);
+         int mark = placeholder.length();
+         placeholder.appendCodePoint(current.letter);
+         if (current.wordEnd) { result.add(placeholder.toString()); }
+         getSortedList(current.mid, placeholder, result);
+         placeholder.setLength(mark);
+         getSortedList(current.right, placeholder, result);
          return result;
      }
-        
-    /**
-     * Normalizes a term to either add or search for in the tree,
-     * since we do not want to allow the addition of either null or
-     * empty strings within, including empty spaces at the beginning
-     * or end of the string (spaces in the middle are fine, as they
-     * allow our tree to also store multi-word phrases).
-     * @param s The string to sanitize
-     * @return The sanitized version of s
-     */
-    private String normalizeTerm (String s) {
-        // Edge case handling: empty Strings illegal
-        if (s == null || s.equals("")) {
-            throw new IllegalArgumentException();
-        }
-        return s.trim().toLowerCase();
-    }
        
     /**
-     * Given two characters, c1 and c2, determines whether c1 is
-     * alphabetically less than, greater than, or equal to c2
-     * @param c1 The first character
-     * @param c2 The second character
+     * Given two already-normalized code points, c1 and c2, determines whether
+     * c1 is alphabetically less than, greater than, or equal to c2
+     * @param c1 The first code point
+     * @param c2 The second code point
      * @return
      *   - some int less than 0 if c1 is alphabetically less than c2
      *   - 0 if c1 is equal to c2
      *   - some int greater than 0 if c1 is alphabetically greater than c2
      */
-    private int compareChars (char c1, char c2) {
-        return Character.toLowerCase(c1) - Character.toLowerCase(c2);
+    private int compareChars (int c1, int c2) {
+        return c1 - c2;
     } 
     
+    /**
+     * Brings any derived lookup structures up to date after the given term was
+     * added, removed or re-prioritized.
+     * @param term The String that changed
+     * @param stored Whether the term is now stored
+     * @param priority The term's priority, if it is stored
+     */
+    private void termChanged (String term, boolean stored, int priority) {
+        if (this.cache != null) { this.cache.invalidate(term); }
+        if (this.infix != null) { this.infix.update(normalizer.normalize(term), stored, priority); }
+        if (this.metrics != null) { this.metrics.treeChanged(); }
+    }
+    
     // -----------------------------------------------------------
     // Extra Credit Methods
     // -----------------------------------------------------------
     
     /**
-     * Adds the given search term toAdd with its associated priority int to the TextFiller
+     * Adds the given search term toAdd with its associated priority int to the TextFiller,
+     * or changes its priority to the given one if it is already stored.
      * @param toAdd String to add to the TextFiller
      * @param priority Priority int associated with the String toAdd
      */
     public void add (String toAdd, int priority) {
-        if (contains(normalizeTerm(toAdd))) { return; }
-        this.root = add(this.root, toAdd, priority);
-        this.size++;
+        if (!contains(toAdd)) { this.size++; }
+        if (this.metrics != null) { this.metrics.treeChanging(); }
+        this.root = add(this.root, toAdd, normalizer.start(toAdd), normalizer.end(toAdd), priority);
+        termChanged(toAdd, true, priority);
+    }
+    
+    /**
+     * Changes the priority of a search term already stored in the TextFiller.
+     * @param term The stored String whose priority is changing
+     * @param priority The new priority int of term
+     * @return Returns true if term was stored and its priority updated, false otherwise
+     */
+    public boolean updatePriority (String term, int priority) {
+        if (!contains(term)) { return false; }
+        add(term, priority);
+        return true;
     }
     
     /**
@@ -262,8 +412,11 @@ public class TernaryTreeTextFiller implements TextFiller {
      * @return Returns the search term of the highest priority containing the prefix query
      */
     public String textFillPremium (String query) {
-        if (contains(normalizeTerm(query))) { return query; }
-        return textFillPremium(this.root, query, "");
+        if (this.metrics == null) { return textFillPremiumLookup(query); }
+        long started = System.nanoTime(), allocated = this.metrics.allocatedBytes();
+        String result = textFillPremiumLookup(query);
+        this.metrics.textFillPremium.record(System.nanoTime() - started, this.metrics.allocatedBytes() - allocated);
+        return result;
     }
     
     // -----------------------------------------------------------
@@ -271,81 +424,864 @@ public class TernaryTreeTextFiller implements TextFiller {
     // -----------------------------------------------------------
     
     /**
-     * Adds the given string to the TextFiller with its associated priority int
-     * @param current The current node
-     * @param toAdd The String to add to the TextFiller
-     * @param priority The int priority associated with the added word
+     * Answers textFillPremium from the prefix cache if enabled, or from the tree otherwise
+     * @param query The String query being completed
+     * @return Return a String of the highest priority word that possesses the query as a prefix, or null
      */
-    private void addStringPriority(TTNode current, String toAdd, int priority) {
-        char[] word = toAdd.toCharArray();
-        for (char c : word) {
-            current.mid = new TTNode(c, false, priority);
-            current.priority = priority;
-            current = current.mid;
-        }
-        current.wordEnd = true;
-        current.wordEndPriority = priority;
-        current.priority = priority;
+    private String textFillPremiumLookup (String query) {
+        if (this.cache != null) { return this.cache.lookup(query).premium; }
+        return textFillPremium(findQuery(this.root, query), query);
     }
     
+    /**
+     * Returns the highest priority search term possessing the given query as a prefix.
+     * @param current The TTNode holding the last code point of the query, or null if there is none
+     * @param query The String query being completed
+     * @return Return a String of the highest priority word that possesses the query as a prefix, or null
+     */
+    private String textFillPremium (TTNode current, String query) {
+        if (current == null) { return null; }
+        if (current.wordEnd) { return normalizer.normalize(query); }
+        return textFillPremium(current.mid, normalizer.appendTo(new StringBuilder(), query));
+    }
     
     /**
-     * Adds given String toAdd with its associated priority to the TextFiller
-     * @param current The current TTNode
-     * @param toAdd The String being added to the TextFiller
-     * @param priority The int priority of the String
-     * @return A reference to the Node containing the recently added String toAdd
+     * Completes the given prefix with the suffix of its highest priority word by
+     * following whichever child's priority maximum equals that of the subtree,
+     * preferring the alphabetically first word on ties.
+     * @param current The mid child of the TTNode holding the last code point of the prefix
+     * @param result Builder holding the normalized prefix, to which the suffix is appended
+     * @return Return a String of the highest priority word that possesses the query as a prefix.
      */
-    private TTNode add(TTNode current, String toAdd, int priority) {
-        normalizeTerm(toAdd);
+    private String textFillPremium (TTNode current, StringBuilder result) {
+        int priority = current.priority;
 
-        if (current == null) {
-            current = new TTNode(toAdd.charAt(0), toAdd.length() == 1, priority);
-            addStringPriority(current, toAdd.substring(1), priority);
-            return current;
-        } 
-        
-        int compare = compareChars(current.letter, toAdd.charAt(0));
+        while (true) {
+            if (current.left != null && current.left.priority == priority) {
+                current = current.left;
+            } else if (current.wordEnd && current.wordEndPriority == priority) {
+                return result.appendCodePoint(current.letter).toString();
+            } else if (current.mid != null && current.mid.priority == priority) {
+                result.appendCodePoint(current.letter);
+                current = current.mid;
+            } else {
+                current = current.right;
+            }
+        }
+    }
 
-        if (compare == 0) {
-            current.mid = add(current.mid, toAdd.substring(1), priority);
+    // -----------------------------------------------------------
+    // Fuzzy Completion Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Returns up to limit search terms that begin with some prefix within
+     * maxDistance edits (insertions, deletions or substitutions) of the query,
+     * so that mistyped prefixes still produce completions. Results are ordered
+     * best first: by fewest edits, then by highest priority, then alphabetically.
+     * @param query The possibly mistyped String prefix being checked
+     * @param maxDistance The largest number of edits a completion may be away from the query
+     * @param limit The most completions to return
+     * @return Returns the best completions within maxDistance, or an empty List if there are none
+     */
+    public List<String> textFillFuzzy (String query, int maxDistance, int limit) {
+        if (maxDistance < 0 || limit < 1) {
+            throw new IllegalArgumentException();
         }
-        if (compare > 0) {
-            current.left = add(current.left, toAdd, priority);
+        FuzzySearch search = new FuzzySearch(normalizer.normalize(query), maxDistance, limit);
+        search.walk(this.root, 0, search.rows[0][search.query.length]);
+        return search.results();
+    }
+
+    // -----------------------------------------------------------
+    // Fuzzy Completion Helpers
+    // -----------------------------------------------------------
+
+    /**
+     * Depth-first walk of the tree computing one Levenshtein row per
+     * character of the current path, pruning any branch that can no
+     * longer come within the edit bound. Rows are kept in a per-depth
+     * buffer shared by the left and right siblings at each level, and the
+     * best completions so far are held in a bounded heap whose worst
+     * entry tightens the bound once it is full. Once the query is used up
+     * every completion below shares one distance, so rows are no longer
+     * needed and subtrees are pruned by their priority maxima instead.
+     * Terms are visited in alphabetical order, so a term tying the worst
+     * completion kept always loses to it.
+     */
+    private class FuzzySearch {
+
+        final int[] query;
+        final int maxDistance, limit;
+        int[][] rows;
+        final StringBuilder path = new StringBuilder();
+        final PriorityQueue<Candidate> best = new PriorityQueue<Candidate>(Collections.reverseOrder());
+
+        FuzzySearch (String query, int maxDistance, int limit) {
+            this.query = query.codePoints().toArray();
+            this.maxDistance = maxDistance;
+            this.limit = limit;
+            this.rows = new int[16][this.query.length + 1];
+            for (int j = 0; j <= this.query.length; j++) {
+                rows[0][j] = j;
+            }
         }
-        if (compare < 0) {
-            current.right = add(current.right, toAdd, priority);
+
+        /**
+         * Visits current and its siblings at the given depth
+         * @param current The current TTNode
+         * @param depth Number of characters on the path above current
+         * @param matched Fewest edits between the query and any prefix of the path above current
+         */
+        void walk (TTNode current, int depth, int matched) {
+            if (current == null) { return; }
+            walk(current.left, depth, matched);
+
+            if (depth + 1 == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            if (rows[depth + 1] == null) {
+                rows[depth + 1] = new int[query.length + 1];
+            }
+            int[] prev = rows[depth],
+                  row = rows[depth + 1];
+            int c = current.letter;
+
+            row[0] = prev[0] + 1;
+            int rowMin = row[0];
+            for (int j = 1; j <= query.length; j++) {
+                int cost = query[j - 1] == c ? 0 : 1;
+                row[j] = Math.min(Math.min(prev[j] + 1, row[j - 1] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, row[j]);
+            }
+            int nowMatched = Math.min(matched, row[query.length]);
+
+            int mark = path.length();
+            path.appendCodePoint(current.letter);
+            if (current.wordEnd) {
+                offer(nowMatched, current.wordEndPriority);
+            }
+            if (rowMin >= nowMatched) {
+                // No deeper row can come closer, so every completion below is nowMatched edits away
+                complete(current.mid, nowMatched);
+            } else if (rowMin <= bound()) {
+                walk(current.mid, depth + 1, nowMatched);
+            }
+            path.setLength(mark);
+
+            walk(current.right, depth, matched);
         }
-        return current;
+
+        /**
+         * Visits current and its siblings once the query is used up, skipping
+         * any subtree whose priority maximum could not place it among the best
+         * @param current The current TTNode
+         * @param distance The edits between the query and every completion below
+         */
+        void complete (TTNode current, int distance) {
+            if (current == null || !placeable(distance, current.priority)) { return; }
+            complete(current.left, distance);
+
+            int mark = path.length();
+            path.appendCodePoint(current.letter);
+            if (current.wordEnd) {
+                offer(distance, current.wordEndPriority);
+            }
+            complete(current.mid, distance);
+            path.setLength(mark);
+
+            complete(current.right, distance);
+        }
+
+        /**
+         * @return The largest distance a new completion may have and still be kept
+         */
+        int bound () {
+            return best.size() < limit ? maxDistance : best.peek().distance;
+        }
+
+        /**
+         * @return Whether a term visited from now on with the given distance and
+         * priority would be kept among the best
+         */
+        boolean placeable (int distance, int priority) {
+            if (best.size() < limit) { return distance <= maxDistance; }
+            Candidate worst = best.peek();
+            return distance < worst.distance || (distance == worst.distance && priority > worst.priority);
+        }
+
+        void offer (int distance, int priority) {
+            if (!placeable(distance, priority)) { return; }
+            best.add(new Candidate(path.toString(), distance, priority));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<String> results () {
+            Candidate[] sorted = best.toArray(new Candidate[0]);
+            Arrays.sort(sorted);
+            List<String> result = new ArrayList<String>(sorted.length);
+            for (Candidate c : sorted) {
+                result.add(c.term);
+            }
+            return result;
+        }
+
     }
-    
+
     /**
-     * Returns the first search term contained in the TextFiller that possesses the query as a prefix.
-     * @param current The current TTNode
-     * @param prefix String prefix being checked
-     * @param suffix String suffix of the word of highest priority that contains the prefix
-     * @return Return a String of the highest priority word that possesses the query as a prefix.
+     * A fuzzy completion along with what it is ranked by
      */
-    private String textFillPremium(TTNode current, String prefix, String suffix) {
-        current = findQuery(this.root, normalizeTerm(prefix));
-        if (current == null) { return null; }
-        int priority = findQuery(this.root, prefix).priority;
-
-        while (current.wordEndPriority != priority) {
-           if (current.mid != null && current.mid.priority >= priority) {
-               current = current.mid;
-           }
-           if (current.right != null && current.right.priority >= priority) {
-               current = current.right;
-           }
-           if (current.left != null && current.left.priority >= priority) {
-               current = current.left;
-           }
-           suffix += current.letter;  
-        }
-        return prefix + suffix;
+    private static class Candidate implements Comparable<Candidate> {
+
+        final String term;
+        final int distance, priority;
+
+        Candidate (String term, int distance, int priority) {
+            this.term = term;
+            this.distance = distance;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo (Candidate other) {
+            if (distance != other.distance) { return distance - other.distance; }
+            if (priority != other.priority) { return Integer.compare(other.priority, priority); }
+            return TermNormalizer.CODE_POINT_ORDER.compare(term, other.term);
+        }
+
     }
-    
+
+    // -----------------------------------------------------------
+    // Prefix Cache Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Turns on caching of textFill and textFillPremium answers: every prefix of up to
+     * shallowDepth code points is answered from a table computed up front, and deeper
+     * prefixes from a least-recently-used cache of the given capacity. Both are kept
+     * consistent as terms are added, removed or re-prioritized.
+     * @param shallowDepth The longest prefix, in code points, precomputed for every stored term
+     * @param capacity The most deeper prefixes whose answers are remembered
+     */
+    public void enablePrefixCache (int shallowDepth, int capacity) {
+        if (shallowDepth < 0 || capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.cache = new PrefixCache(shallowDepth, capacity);
+    }
+
+    /**
+     * Turns off prefix caching, releasing all cached answers.
+     */
+    public void disablePrefixCache () {
+        this.cache = null;
+    }
+
+    // -----------------------------------------------------------
+    // Prefix Cache Helpers
+    // -----------------------------------------------------------
+
+    /**
+     * Cached textFill and textFillPremium answers, keyed by normalized prefix.
+     * An answer only depends on the terms beginning with its prefix, so
+     * adding or removing a term only ever affects the entries for that
+     * term's own prefixes, which invalidate refreshes or evicts.
+     */
+    private class PrefixCache {
+
+        final int shallowDepth;
+        final Map<String, Answers> shallow = new HashMap<String, Answers>();
+        final LinkedHashMap<String, Answers> recent;
+
+        PrefixCache (int shallowDepth, int capacity) {
+            this.shallowDepth = shallowDepth;
+            this.recent = new LinkedHashMap<String, Answers>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry (Map.Entry<String, Answers> eldest) {
+                    return size() > capacity;
+                }
+            };
+            precompute(root, new StringBuilder(), 0);
+        }
+
+        /**
+         * @param query The String query being completed
+         * @return The answers for query, computed and remembered on a miss
+         */
+        Answers lookup (String query) {
+            String key = normalizer.normalize(query);
+            if (key.codePointCount(0, key.length()) <= shallowDepth) {
+                return shallow.getOrDefault(key, Answers.NONE);
+            }
+            Answers answers = recent.get(key);
+            if (answers == null) {
+                answers = answersFor(findQuery(root, key), key);
+                recent.put(key, answers);
+            }
+            return answers;
+        }
+
+        /**
+         * Refreshes the shallow entries and evicts the deeper entries for every
+         * prefix of the given term after it was added, removed or re-prioritized.
+         * @param term The String whose prefixes' answers may have changed
+         */
+        void invalidate (String term) {
+            String key = normalizer.normalize(term);
+            for (int end = 0, depth = 1; end < key.length(); depth++) {
+                end += Character.charCount(key.codePointAt(end));
+                String prefix = key.substring(0, end);
+                if (depth > shallowDepth) {
+                    recent.remove(prefix);
+                } else if (!Character.isWhitespace(prefix.codePointBefore(end))) {
+                    TTNode found = findQuery(root, prefix);
+                    if (found == null) {
+                        shallow.remove(prefix);
+                    } else {
+                        shallow.put(prefix, answersFor(found, prefix));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fills the shallow table with the answers for every prefix below current
+         * @param current The current TTNode
+         * @param path The code points on the path down to current
+         * @param depth Number of code points on the path above current
+         */
+        void precompute (TTNode current, StringBuilder path, int depth) {
+            if (current == null || depth >= shallowDepth) { return; }
+            precompute(current.left, path, depth);
+            int mark = path.length();
+            path.appendCodePoint(current.letter);
+            // Queries are trimmed, so a prefix ending in a space is never asked for
+            if (!Character.isWhitespace(current.letter)) {
+                String prefix = path.toString();
+                shallow.put(prefix, answersFor(current, prefix));
+            }
+            precompute(current.mid, path, depth + 1);
+            path.setLength(mark);
+            precompute(current.right, path, depth);
+        }
+
+        /**
+         * Recomputes every shallow entry and forgets every deeper one, after a
+         * change that may touch any prefix's answers
+         */
+        void rebuild () {
+            shallow.clear();
+            recent.clear();
+            precompute(root, new StringBuilder(), 0);
+        }
+
+        Answers answersFor (TTNode found, String prefix) {
+            return new Answers(textFill(found, prefix), textFillPremium(found, prefix));
+        }
+
+    }
+
+    /**
+     * The textFill and textFillPremium answers for a single prefix
+     */
+    private static class Answers {
+
+        static final Answers NONE = new Answers(null, null);
+
+        final String fill, premium;
+
+        Answers (String fill, String premium) {
+            this.fill = fill;
+            this.premium = premium;
+        }
+
+    }
+
+    // -----------------------------------------------------------
+    // Metrics Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Starts collecting metrics on this TextFiller's hot paths, which can then be
+     * read directly or registered with JMX; see TextFillerMetrics.
+     * @return The metrics being collected
+     */
+    public TextFillerMetrics enableMetrics () {
+        if (this.metrics == null) {
+            this.metrics = new TextFillerMetrics(this);
+        }
+        return this.metrics;
+    }
+
+    /**
+     * Stops collecting metrics; the caller should unregister them from JMX first.
+     */
+    public void disableMetrics () {
+        this.metrics = null;
+    }
+
+    /**
+     * Walks the whole tree to measure its shape, where the depth of a node is the
+     * number of nodes visited on the way down to it from the root. The walk keeps
+     * its own stack, so a tree seen mid-change from another thread can't overflow
+     * the call stack, and checks every SHAPE_CHECK_NODES nodes whether to give up.
+     * @param abandoned Tells the walk to give up, as when the tree has changed under it
+     * @return The node count, maximum node depth, total depth of the nodes ending
+     * each stored term, and the number of such nodes; or null if abandoned
+     */
+    long[] shape (BooleanSupplier abandoned) {
+        long[] shape = new long[4];
+        Deque<TTNode> nodes = new ArrayDeque<TTNode>();
+        Deque<Integer> depths = new ArrayDeque<Integer>();
+        if (this.root != null) {
+            nodes.push(this.root);
+            depths.push(1);
+        }
+        while (!nodes.isEmpty()) {
+            TTNode current = nodes.pop();
+            int depth = depths.pop();
+            if (++shape[0] % SHAPE_CHECK_NODES == 0 && abandoned.getAsBoolean()) { return null; }
+            shape[1] = Math.max(shape[1], depth);
+            if (current.wordEnd) {
+                shape[2] += depth;
+                shape[3]++;
+            }
+            if (current.left != null)  { nodes.push(current.left);  depths.push(depth + 1); }
+            if (current.mid != null)   { nodes.push(current.mid);   depths.push(depth + 1); }
+            if (current.right != null) { nodes.push(current.right); depths.push(depth + 1); }
+        }
+        return shape;
+    }
+
+    // -----------------------------------------------------------
+    // Infix Search Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Turns on infix search, letting textFillInfix find terms that contain a
+     * query anywhere rather than only at their start. The suffix index this
+     * needs is built on the first search. Later changes are patched into it as
+     * they are made, and it is only rebuilt, on the next search, once more than
+     * InfixIndex.DELTA_LIMIT terms have been added or removed since it was built;
+     * priority changes alone never call for a rebuild.
+     */
+    public void enableInfixSearch () {
+        this.infixEnabled = true;
+        this.infix = null;
+    }
+
+    /**
+     * Turns off infix search, releasing its index.
+     */
+    public void disableInfixSearch () {
+        this.infixEnabled = false;
+        this.infix = null;
+    }
+
+    /**
+     * Returns up to limit search terms that contain the query anywhere within them,
+     * highest priority first and alphabetically among equal priorities.
+     * @param query The String being searched for inside the terms
+     * @param limit The most terms to return
+     * @return Returns the best matching terms, or an empty List if none contain the query
+     * @throws IllegalStateException If infix search has not been enabled
+     */
+    public List<String> textFillInfix (String query, int limit) {
+        if (!this.infixEnabled) {
+            throw new IllegalStateException();
+        }
+        if (this.infix == null || this.infix.stale()) {
+            this.infix = buildInfixIndex();
+        }
+        return this.infix.search(query, limit);
+    }
+
+    /**
+     * @return A new infix index over the current terms and their priorities
+     */
+    InfixIndex buildInfixIndex () {
+        List<String> terms = getSortedList();
+        int[] priorities = new int[terms.size()];
+        for (int i = 0; i < priorities.length; i++) {
+            priorities[i] = findQuery(this.root, terms.get(i)).wordEndPriority;
+        }
+        return new InfixIndex(terms, priorities, this.normalizer);
+    }
+
+    // -----------------------------------------------------------
+    // Feedback Ranking Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Turns on learning from selections: each completion a user accepts raises
+     * that term's priority, so textFillPremium comes to rank terms by how often,
+     * and how recently, they are chosen. Older selections count for less as new
+     * ones arrive, halving in weight every halfLife selections; the priorities
+     * given to add decay along with them.
+     * @param halfLife Number of selections after which a selection counts half as much
+     * @param selectionWeight The priority one fresh selection adds to its term
+     */
+    public void enableFeedbackRanking (int halfLife, int selectionWeight) {
+        if (halfLife < 1 || selectionWeight < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.feedback = new FeedbackRanking(halfLife, selectionWeight);
+    }
+
+    /**
+     * Turns off learning from selections, discarding any not yet applied.
+     * Priorities already learned are kept.
+     */
+    public void disableFeedbackRanking () {
+        this.feedback = null;
+    }
+
+    /**
+     * Records that the user, having typed prefix, chose term from the completions.
+     * Safe to call from any number of threads at once, alongside readers: the
+     * selection is only queued here, and takes effect at the next applySelections.
+     * @param prefix The String query the user had typed
+     * @param term The completion the user chose, which must begin with prefix
+     * @throws IllegalStateException If feedback ranking has not been enabled
+     */
+    public void recordSelection (String prefix, String term) {
+        FeedbackRanking feedback = this.feedback;
+        if (feedback == null) {
+            throw new IllegalStateException();
+        }
+        String key = normalizer.normalize(term);
+        if (!key.startsWith(normalizer.normalize(prefix))) {
+            throw new IllegalArgumentException();
+        }
+        while (feedback.pending.computeIfAbsent(key, k -> new AtomicLong()).getAndIncrement() < 0) {
+            // Raced a drain that retired the counter, which is about to be removed
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Applies every selection recorded since the last call in one batch, raising
+     * the priorities of the chosen terms and the priority maxima above them.
+     * Like add, this must not run at the same time as any other call on this
+     * TextFiller apart from recordSelection. Selections of terms no longer
+     * stored are dropped.
+     * @return Returns the number of selections applied
+     * @throws IllegalStateException If feedback ranking has not been enabled
+     */
+    public long applySelections () {
+        if (this.feedback == null) {
+            throw new IllegalStateException();
+        }
+        return this.feedback.apply();
+    }
+
+    // -----------------------------------------------------------
+    // Feedback Ranking Helpers
+    // -----------------------------------------------------------
+
+    /**
+     * Selection counts waiting to be applied, and the weight a selection is
+     * currently worth. Rather than decaying every stored priority after each
+     * selection, each selection is worth more than the one before, growing
+     * by a factor of two every halfLife selections; only the ratios between
+     * priorities matter for ranking, so this is the same as decaying the old
+     * ones. When the weight grows too large, every priority in the tree and
+     * the weight itself are halved, which keeps those ratios.
+     * <p>
+     * Each drained counter is retired and removed, so terms selected once
+     * don't hold an entry forever. Retiring sets a counter to RETIRED, and
+     * only if it is still 0, so a selection racing the drain is never lost:
+     * either it lands before retirement and keeps the counter for the next
+     * batch, or it finds the counter retired and records itself afresh.
+     */
+    private class FeedbackRanking {
+
+        static final int RESCALE_LOG2 = 24;
+        static final long RETIRED = Long.MIN_VALUE;
+
+        final ConcurrentHashMap<String, AtomicLong> pending = new ConcurrentHashMap<String, AtomicLong>();
+        final int halfLife;
+        double weight;
+
+        FeedbackRanking (int halfLife, int selectionWeight) {
+            this.halfLife = halfLife;
+            this.weight = selectionWeight;
+        }
+
+        /**
+         * Advances the weight past the pending selections, then raises the priority
+         * of each pending term by its selections at that weight, so that every
+         * selection in a batch counts as of the end of the batch.
+         * @return The number of selections applied
+         */
+        long apply () {
+            Map<String, Long> counts = new HashMap<String, Long>();
+            long applied = 0;
+            for (Map.Entry<String, AtomicLong> entry : pending.entrySet()) {
+                AtomicLong counter = entry.getValue();
+                long count = counter.getAndSet(0);
+                // Retire the drained counter unless a selection has raced in since
+                if (counter.compareAndSet(0, RETIRED)) {
+                    pending.remove(entry.getKey(), counter);
+                }
+                if (count == 0) { continue; }
+                counts.put(entry.getKey(), count);
+                applied += count;
+            }
+
+            // Grown in log2 terms, since a large enough batch would overflow the weight itself
+            double log2Weight = Math.log(weight) / Math.log(2) + (double) applied / halfLife;
+            int halvings = (int) Math.ceil(log2Weight - RESCALE_LOG2);
+            if (halvings > 0) {
+                int shift = Math.min(halvings, 31);
+                shiftPriorities(root, shift);
+                log2Weight -= halvings;
+                if (cache != null) { cache.rebuild(); }
+                if (infix != null) { infix.shiftPriorities(shift); }
+            }
+            weight = Math.pow(2, log2Weight);
+
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                String term = entry.getKey();
+                TTNode found = findQuery(root, term);
+                if (found == null || !found.wordEnd) { continue; }
+                long raised = found.wordEndPriority + Math.round(entry.getValue() * weight);
+                add(term, (int) Math.min(Integer.MAX_VALUE, raised));
+            }
+            return applied;
+        }
+
+        /**
+         * Halves the priority of every term below current the given number of times,
+         * keeping their order
+         * @param current The current TTNode
+         * @param shift The number of halvings
+         */
+        void shiftPriorities (TTNode current, int shift) {
+            if (current == null) { return; }
+            shiftPriorities(current.left, shift);
+            shiftPriorities(current.mid, shift);
+            shiftPriorities(current.right, shift);
+            current.wordEndPriority >>= shift;
+            updatePriority(current);
+        }
+
+    }
+
+    // -----------------------------------------------------------
+    // Batch Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Answers textFill for every query in the batch with one shared walk of
+     * the tree: queries are visited in sorted order, and each resumes from the
+     * deepest node it has in common with the one before, so shared prefixes
+     * are only ever walked once.
+     * @param queries The String queries being completed
+     * @return Returns the textFill answer for each query, in the same order as queries
+     */
+    public String[] textFillAll (List<String> queries) {
+        return textFillAll(queries, null);
+    }
+
+    /**
+     * Answers textFill for every query in the batch as textFillAll(queries) does,
+     * splitting large batches into sorted runs answered in parallel on the given pool.
+     * The TextFiller must not be modified while the batch is being answered.
+     * @param queries The String queries being completed
+     * @param pool The pool large batches are fanned out over, or null to answer on this thread
+     * @return Returns the textFill answer for each query, in the same order as queries
+     */
+    public String[] textFillAll (List<String> queries, ForkJoinPool pool) {
+        BatchFill batch = new BatchFill(queries);
+        if (pool == null) {
+            batch.answer(0, batch.order.length);
+        } else {
+            pool.invoke(batch);
+        }
+        return batch.results;
+    }
+
+    // -----------------------------------------------------------
+    // Batch Helpers
+    // -----------------------------------------------------------
+
+    /**
+     * A sorted batch of queries, answered a run at a time. Each run keeps
+     * the nodes matched for the previous query's code points so that the
+     * next query only walks the part of its key not shared with it.
+     */
+    @SuppressWarnings("serial") // Never serialized; only ever run inside a ForkJoinPool
+    private class BatchFill extends RecursiveAction {
+
+        static final int RUN = 1024;
+
+        final List<String> queries;
+        final int[][] keys;
+        final Integer[] order;
+        final String[] results;
+        final int lo, hi, longest;
+
+        BatchFill (List<String> queries) {
+            int n = queries.size(), longest = 0;
+            this.queries = queries;
+            this.keys = new int[n][];
+            this.order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = normalizer.normalize(queries.get(i)).codePoints().toArray();
+                order[i] = i;
+                longest = Math.max(longest, keys[i].length);
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compare(keys[a], keys[b]));
+            this.results = new String[n];
+            this.lo = 0;
+            this.hi = n;
+            this.longest = longest;
+        }
+
+        BatchFill (BatchFill whole, int lo, int hi) {
+            this.queries = whole.queries;
+            this.keys = whole.keys;
+            this.order = whole.order;
+            this.results = whole.results;
+            this.lo = lo;
+            this.hi = hi;
+            this.longest = whole.longest;
+        }
+
+        @Override
+        protected void compute () {
+            if (hi - lo <= RUN) {
+                answer(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new BatchFill(this, lo, mid), new BatchFill(this, mid, hi));
+        }
+
+        /**
+         * Answers the queries in the sorted run [from, to)
+         */
+        void answer (int from, int to) {
+            TTNode[] path = new TTNode[longest];
+            int[] previous = null;
+            int matched = 0;
+
+            for (int i = from; i < to; i++) {
+                int[] key = keys[order[i]];
+                int depth = 0;
+                if (previous != null) {
+                    int limit = Math.min(matched, key.length);
+                    while (depth < limit && previous[depth] == key[depth]) {
+                        depth++;
+                    }
+                }
+
+                TTNode current = depth == 0 ? root : path[depth - 1].mid;
+                while (current != null && depth < key.length) {
+                    int compare = compareChars(current.letter, key[depth]);
+                    if (compare > 0) {
+                        current = current.left;
+                    } else if (compare < 0) {
+                        current = current.right;
+                    } else {
+                        path[depth++] = current;
+                        current = current.mid;
+                    }
+                }
+
+                TTNode found = depth == key.length ? path[depth - 1] : null;
+                results[order[i]] = textFill(found, queries.get(order[i]));
+                previous = key;
+                matched = depth;
+            }
+        }
+
+    }
+
+    // -----------------------------------------------------------
+    // Construction Support
+    // -----------------------------------------------------------
+
+    /**
+     * Joins TextFillers built independently from disjoint partitions of a term set,
+     * where every term in a part begins with the same code point, into a single
+     * TextFiller. A first code point may be split across several consecutive parts
+     * if each of those holds terms sharing their second code point as well (or only
+     * the one-letter term), no two of them the same. Each part's root becomes one
+     * sibling in a balanced binary tree at the top level, with the parts of a split
+     * code point merged into one node whose middle children are stitched the same
+     * way; nothing below them is copied.
+     * @param normalizer The normalizer every part was built with
+     * @param parts The parts to join, in ascending order of their first and then second code point
+     * @return A TextFiller holding every term of every part; the parts must not be used afterwards
+     */
+    static TernaryTreeTextFiller stitch (TermNormalizer normalizer, List<TernaryTreeTextFiller> parts) {
+        TernaryTreeTextFiller whole = new TernaryTreeTextFiller(normalizer);
+        List<TTNode> roots = new ArrayList<TTNode>(parts.size());
+        for (TernaryTreeTextFiller part : parts) {
+            if (part.empty()) { continue; }
+            if (part.root.left != null || part.root.right != null) {
+                throw new IllegalArgumentException("Part holds terms with more than one first letter");
+            }
+            roots.add(part.root);
+            whole.size += part.size;
+        }
+        whole.root = whole.join(roots);
+        return whole;
+    }
+
+    /**
+     * Merges each run of roots sharing a letter into the first of them,
+     * stitching their middle children together beneath it, then links the
+     * merged roots as siblings.
+     * @return The root of the joined subtree, or null if there are no roots
+     */
+    private TTNode join (List<TTNode> roots) {
+        List<TTNode> merged = new ArrayList<TTNode>(roots.size());
+        for (int i = 0, j; i < roots.size(); i = j) {
+            TTNode first = roots.get(i);
+            for (j = i + 1; j < roots.size() && roots.get(j).letter == first.letter; j++) {}
+            if (j - i > 1) {
+                List<TTNode> mids = new ArrayList<TTNode>(j - i);
+                for (int k = i; k < j; k++) {
+                    TTNode part = roots.get(k);
+                    if (part.wordEnd) {
+                        first.wordEnd = true;
+                        first.wordEndPriority = part.wordEndPriority;
+                    }
+                    if (part.mid == null) { continue; }
+                    if (part.mid.left != null || part.mid.right != null) {
+                        throw new IllegalArgumentException("Split part holds terms with more than one second letter");
+                    }
+                    mids.add(part.mid);
+                }
+                first.mid = join(mids);
+            }
+            merged.add(first);
+        }
+        return stitch(merged, 0, merged.size());
+    }
+
+    /**
+     * Links the roots in [lo, hi) into a balanced binary tree of siblings
+     * @return The root of the joined subtree, or null if the range is empty
+     */
+    private TTNode stitch (List<TTNode> roots, int lo, int hi) {
+        if (lo >= hi) { return null; }
+        int mid = (lo + hi) >>> 1;
+        TTNode current = roots.get(mid);
+        if (mid > lo && compareChars(roots.get(mid - 1).letter, current.letter) >= 0) {
+            throw new IllegalArgumentException("Parts are not in ascending, disjoint order");
+        }
+        current.left = stitch(roots, lo, mid);
+        current.right = stitch(roots, mid + 1, hi);
+        updatePriority(current);
+        return current;
+    }
+
     // -----------------------------------------------------------
     // TTNode Internal Storage
     // -----------------------------------------------------------
@@ -357,19 +1293,19 @@ public class TernaryTreeTextFiller implements TextFiller {
     private class TTNode {
         
         boolean wordEnd;
-        char letter;
+        int letter;
         int priority,
             wordEndPriority;
         TTNode left, mid, right;
         
         /**
-         * Constructs a new TTNode containing the given character
+         * Constructs a new TTNode containing the given code point
          * and whether or not it represents a word-end, which can
          * then be added to the existing tree.
-         * @param c Letter to store at this node
+         * @param c Normalized code point to store at this node
          * @param w Whether or not this is a word-end
          */
-        TTNode (char c, boolean w, int p) {
+        TTNode (int c, boolean w, int p) {
             letter  = c;
             wordEnd = w;
             priority = p;
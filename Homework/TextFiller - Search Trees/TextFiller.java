@@ -7,6 +7,7 @@ public interface TextFiller {
     int size ();
     boolean empty ();
     void add (String toAdd);
+    boolean remove (String toRemove);
     boolean contains (String query);
     String textFill (String query);
     List<String> getSortedList ();
@@ -0,0 +1,236 @@
+package bench.textfill;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntFunction;
+
+import main.textfill.*;
+
+/**
+ * Benchmarks comparing the TextFiller implementations on generated
+ * dictionaries and query logs, built in sorted or shuffled order. Plain
+ * Java, so it runs wherever the sources compile:
+ * <pre>
+ *   java bench.textfill.TextFillerBenchmark [terms]
+ * </pre>
+ * Each query operation is run WARMUP_OPS times, then MEASURED_OPS times
+ * with every call timed on its own, and reported as throughput, latency
+ * percentiles and bytes allocated per call. Per-call timing adds the cost
+ * of two System.nanoTime calls to each latency. build is timed over the
+ * whole dictionary, so per-add cost is its time divided by terms.
+ * textFillPremium is only offered by the impls in PREMIUM_IMPLS, so it is
+ * measured apart from the rest, on the same dictionary and query log, with
+ * every word given a random priority.
+ */
+public class TextFillerBenchmark {
+
+    // -----------------------------------------------------------
+    // Parameters
+    // -----------------------------------------------------------
+    private static final String[] IMPLS = { "ternary", "concurrent", "dawg", "mapped", "offheap", "radix" };
+    private static final String[] PREMIUM_IMPLS = { "ternary" };
+    private static final String[] ORDERS = { "sorted", "shuffled" };
+    private static final int TERMS = 100000;
+
+    private static final long SEED = 281;
+    private static final int QUERIES = 1 << 16;
+    private static final int WARMUP_OPS = 1 << 18, MEASURED_OPS = 1 << 18;
+    private static final int WARMUP_BUILDS = 2, MEASURED_BUILDS = 5;
+    // getSortedList copies the whole dictionary, so it is run far fewer times
+    private static final int LIST_OPS = 50;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are counted in here so that no call can be optimized away
+    private static long sink;
+
+    // -----------------------------------------------------------
+    // Benchmarks
+    // -----------------------------------------------------------
+    public static void main (String[] args) throws IOException {
+        int terms = args.length > 0 ? Integer.parseInt(args[0]) : TERMS;
+        if (THREADS.isThreadAllocatedMemorySupported()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        System.out.printf("%-10s %-8s %-15s %12s %9s %9s %9s %10s%n",
+                "impl", "order", "operation", "ops/s", "p50 us", "p99 us", "max us", "B/op");
+        for (String order : ORDERS) {
+            // Queries are drawn before reordering so both orders see the same log
+            List<String> generated = Dictionary.words(terms, SEED);
+            String[] queries = Dictionary.queryLog(generated, QUERIES, SEED);
+            List<String> words = Dictionary.insertionOrder(generated, order.equals("sorted"), SEED);
+
+            for (String impl : IMPLS) {
+                long[] builds = new long[MEASURED_BUILDS];
+                for (int i = 0; i < WARMUP_BUILDS; i++) {
+                    sink += build(impl, words).size();
+                }
+                for (int i = 0; i < MEASURED_BUILDS; i++) {
+                    long started = System.nanoTime();
+                    sink += build(impl, words).size();
+                    builds[i] = System.nanoTime() - started;
+                }
+                Arrays.sort(builds);
+                System.out.printf("%-10s %-8s %-15s %.1f ms median, %.0f ns per add%n", impl, order, "build",
+                        builds[MEASURED_BUILDS / 2] / 1e6, (double) builds[MEASURED_BUILDS / 2] / words.size());
+
+                TextFiller filler = build(impl, words);
+                report(impl, order, "contains", WARMUP_OPS, MEASURED_OPS, i -> filler.contains(words.get(i % words.size())));
+                report(impl, order, "textFill", WARMUP_OPS, MEASURED_OPS, i -> filler.textFill(queries[i & (QUERIES - 1)]));
+                report(impl, order, "getSortedList", LIST_OPS, LIST_OPS, i -> filler.getSortedList());
+            }
+            for (String impl : PREMIUM_IMPLS) {
+                TernaryTreeTextFiller filler = (TernaryTreeTextFiller) build(impl, words, new Random(SEED));
+                report(impl, order, "textFillPremium", WARMUP_OPS, MEASURED_OPS, i -> filler.textFillPremium(queries[i & (QUERIES - 1)]));
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Runs the operation warmup times, then times each of measured more calls
+     * and prints its throughput, latency percentiles and bytes allocated per call
+     * @param operation Makes the i-th call, returning its result
+     */
+    static void report (String impl, String order, String name, int warmup, int measured, IntFunction<?> operation) {
+        for (int i = 0; i < warmup; i++) {
+            if (operation.apply(i) != null) { sink++; }
+        }
+        long[] latencies = new long[measured];
+        long allocated = allocatedBytes(),
+             started = System.nanoTime();
+        for (int i = 0; i < measured; i++) {
+            long callStarted = System.nanoTime();
+            if (operation.apply(i) != null) { sink++; }
+            latencies[i] = System.nanoTime() - callStarted;
+        }
+        long elapsed = System.nanoTime() - started;
+        allocated = allocatedBytes() - allocated;
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %-8s %-15s %12.0f %9.2f %9.2f %9.2f %10.1f%n", impl, order, name,
+                measured * 1e9 / elapsed,
+                latencies[(int) (0.50 * (measured - 1))] / 1e3,
+                latencies[(int) (0.99 * (measured - 1))] / 1e3,
+                latencies[measured - 1] / 1e3,
+                (double) allocated / measured);
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or 0 if the JVM can't tell
+     */
+    static long allocatedBytes () {
+        return THREADS.isThreadAllocatedMemoryEnabled() ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Builds the named TextFiller holding the given words, added in list order.
+     */
+    static TextFiller build (String impl, List<String> words) throws IOException {
+        return build(impl, words, null);
+    }
+
+    /**
+     * Builds the named TextFiller holding the given words, added in list order,
+     * each with a random priority drawn from priorities unless it is null. Only
+     * the impls in PREMIUM_IMPLS accept priorities.
+     */
+    static TextFiller build (String impl, List<String> words, Random priorities) throws IOException {
+        TextFiller filler = impl.equals("concurrent") ? new ConcurrentTextFiller()
+                          : impl.equals("offheap") ? new OffHeapTextFiller()
+                          : impl.equals("radix") ? new RadixTextFiller()
+                          : new TernaryTreeTextFiller();
+        for (String word : words) {
+            if (priorities == null) {
+                filler.add(word);
+            } else {
+                ((TernaryTreeTextFiller) filler).add(word, priorities.nextInt(1000));
+            }
+        }
+        switch (impl) {
+            case "ternary":
+            case "concurrent":
+            case "offheap":
+            case "radix":
+                return filler;
+            case "dawg":
+                return DawgTextFiller.minimize(filler);
+            case "mapped":
+                Path file = Files.createTempFile("textfiller", ".ttf");
+                file.toFile().deleteOnExit();
+                MappedTextFiller.export(filler, file);
+                return MappedTextFiller.open(file);
+            default:
+                throw new IllegalArgumentException(impl);
+        }
+    }
+
+    /**
+     * Locally generated stand-ins for a word list and a query log: words
+     * are built from a fixed syllable set, so they share prefixes and
+     * suffixes the way real vocabularies do, with some multi-word phrases
+     * mixed in; queries are short prefixes of words drawn with a heavy
+     * skew towards a few popular ones.
+     */
+    static class Dictionary {
+
+        static final String[] SYLLABLES = {
+            "a", "an", "ar", "be", "ca", "con", "de", "di", "er", "ex", "for", "in", "ing",
+            "ka", "la", "le", "lo", "ma", "mi", "ne", "new", "or", "pa", "per", "pro", "qu",
+            "re", "ro", "sa", "se", "son", "st", "ta", "ter", "tion", "to", "un", "ver", "york", "zo"
+        };
+
+        static List<String> words (int count, long seed) {
+            Random random = new Random(seed);
+            Set<String> unique = new LinkedHashSet<String>();
+            StringBuilder sb = new StringBuilder();
+            while (unique.size() < count) {
+                sb.setLength(0);
+                int parts = 1 + random.nextInt(4);
+                for (int i = 0; i < parts; i++) {
+                    sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+                if (random.nextInt(8) == 0) {
+                    sb.append(' ').append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+                unique.add(sb.toString());
+            }
+            return new ArrayList<String>(unique);
+        }
+
+        static List<String> insertionOrder (List<String> words, boolean sorted, long seed) {
+            List<String> result = new ArrayList<String>(words);
+            if (sorted) {
+                Collections.sort(result);
+            } else {
+                Collections.shuffle(result, new Random(seed + 2));
+            }
+            return result;
+        }
+
+        static String[] queryLog (List<String> words, int count, long seed) {
+            Random random = new Random(seed + 1);
+            String[] result = new String[count];
+            for (int i = 0; i < count; i++) {
+                String word = words.get((int) (words.size() * Math.pow(random.nextDouble(), 4)));
+                int length = 1 + (int) (word.length() * Math.pow(random.nextDouble(), 2));
+                result[i] = word.substring(0, Math.min(length, word.length()));
+                if (result[i].trim().isEmpty()) {
+                    result[i] = word;
+                }
+            }
+            return result;
+        }
+
+    }
+
+}
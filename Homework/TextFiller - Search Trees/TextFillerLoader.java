@@ -0,0 +1,215 @@
+package main.textfill;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a TernaryTreeTextFiller from a large UTF-8 file holding one term
+ * per line, using every core rather than one long run of add calls:
+ * <ol>
+ *   <li>the file is cut into chunks at line breaks, and each chunk is
+ *     memory-mapped, decoded and split into terms in parallel, bucketed
+ *     by each term's first normalized code point;</li>
+ *   <li>buckets holding more than their share of the terms, as the most
+ *     common first letters of most vocabularies do, are split again by
+ *     each term's second code point;</li>
+ *   <li>each bucket is added into its own independent tree in parallel,
+ *     keeping the order the terms appeared in the file;</li>
+ *   <li>the trees, which share no first two letters, are stitched together
+ *     as siblings at the top of a single TextFiller.</li>
+ * </ol>
+ * Blank lines, including those the normalizer reduces to nothing (such
+ * as lines of accents alone when they are stripped), are skipped.
+ */
+public final class TextFillerLoader {
+
+    /**
+     * Number of bytes each reading task decodes
+     */
+    static final int CHUNK_BYTES = 32 << 20;
+
+    /**
+     * Number of building tasks aimed for per thread of the pool, so that one
+     * large bucket doesn't leave the other threads idle at the end
+     */
+    static final int PARTS_PER_THREAD = 4;
+
+    /**
+     * Key of the one-letter term when a bucket is split by second code point
+     */
+    private static final int NO_SECOND = -1;
+
+    private TextFillerLoader () {}
+
+    /**
+     * Loads the terms of the given file with the default normalizer on the common pool.
+     * @param file Path of a UTF-8 file with one term per line
+     * @return A TextFiller holding every term in the file
+     * @throws IOException If the file cannot be read
+     */
+    public static TernaryTreeTextFiller load (Path file) throws IOException {
+        return load(file, ForkJoinPool.commonPool(), TermNormalizer.DEFAULT);
+    }
+
+    /**
+     * Loads the terms of the given file, reading and building in parallel on the given pool.
+     * @param file Path of a UTF-8 file with one term per line
+     * @param pool The pool reading and building tasks run on
+     * @param normalizer The normalization applied to every term
+     * @return A TextFiller holding every term in the file
+     * @throws IOException If the file cannot be read
+     */
+    public static TernaryTreeTextFiller load (Path file, ForkJoinPool pool, TermNormalizer normalizer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Read: one bucketing of terms by first code point per chunk
+            List<Callable<Map<Integer, List<String>>>> reads = new ArrayList<>();
+            long[] bounds = chunkBounds(channel);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i], end = bounds[i + 1];
+                reads.add(() -> readChunk(channel, start, end, normalizer));
+            }
+
+            // Chunks are merged in file order so each bucket keeps the file's order
+            SortedMap<Integer, List<String>> buckets = new TreeMap<Integer, List<String>>();
+            for (Map<Integer, List<String>> chunk : all(pool.invokeAll(reads))) {
+                for (Map.Entry<Integer, List<String>> entry : chunk.entrySet()) {
+                    buckets.computeIfAbsent(entry.getKey(), k -> new ArrayList<String>()).addAll(entry.getValue());
+                }
+            }
+
+            // Split: large buckets are divided by second code point
+            int terms = 0;
+            for (List<String> bucket : buckets.values()) {
+                terms += bucket.size();
+            }
+            int share = Math.max(1, terms / (pool.getParallelism() * PARTS_PER_THREAD));
+            List<List<String>> parts = new ArrayList<List<String>>();
+            for (List<String> bucket : buckets.values()) {
+                if (bucket.size() > share) {
+                    parts.addAll(splitBySecond(bucket, normalizer).values());
+                } else {
+                    parts.add(bucket);
+                }
+            }
+
+            // Build: one independent tree per part
+            List<Callable<TernaryTreeTextFiller>> builds = new ArrayList<>();
+            for (List<String> bucket : parts) {
+                builds.add(() -> {
+                    TernaryTreeTextFiller part = new TernaryTreeTextFiller(normalizer);
+                    for (String term : bucket) {
+                        part.add(term);
+                    }
+                    return part;
+                });
+            }
+            return TernaryTreeTextFiller.stitch(normalizer, all(pool.invokeAll(builds)));
+        }
+    }
+
+    // -----------------------------------------------------------
+    // Helper Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Splits the file into chunks of roughly CHUNK_BYTES that each end just
+     * after a line break, so that no line straddles two chunks.
+     * @return The byte offsets at which each chunk starts, followed by the file size
+     */
+    private static long[] chunkBounds (FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(4096);
+        long position = CHUNK_BYTES;
+        while (position < size) {
+            long lineEnd = -1;
+            while (lineEnd < 0 && position < size) {
+                scan.clear();
+                int read = channel.read(scan, position);
+                for (int i = 0; i < read && lineEnd < 0; i++) {
+                    if (scan.get(i) == '\n') { lineEnd = position + i + 1; }
+                }
+                position += read;
+            }
+            if (lineEnd < 0 || lineEnd >= size) { break; }
+            bounds.add(lineEnd);
+            position = lineEnd + CHUNK_BYTES;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the lines in [start, end) of the file and buckets the non-blank ones
+     * by their first normalized code point.
+     */
+    private static Map<Integer, List<String>> readChunk (FileChannel channel, long start, long end,
+            TermNormalizer normalizer) throws IOException {
+        CharBuffer text = StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        Map<Integer, List<String>> buckets = new HashMap<Integer, List<String>>();
+        int lineStart = 0, length = text.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && text.get(i) != '\n') { continue; }
+            String line = text.subSequence(lineStart, i).toString();
+            lineStart = i + 1;
+            if (normalizer.isBlank(line)) { continue; }
+            int first = normalizer.codePointAt(line, normalizer.start(line));
+            buckets.computeIfAbsent(first, k -> new ArrayList<String>()).add(line);
+        }
+        return buckets;
+    }
+
+    /**
+     * Buckets terms sharing a first code point by their second normalized code
+     * point, or NO_SECOND for the one-letter term, keeping their order.
+     */
+    private static SortedMap<Integer, List<String>> splitBySecond (List<String> bucket, TermNormalizer normalizer) {
+        SortedMap<Integer, List<String>> split = new TreeMap<Integer, List<String>>();
+        for (String term : bucket) {
+            int end = normalizer.end(term), second = normalizer.next(term, normalizer.start(term), end);
+            int key = second < end ? normalizer.codePointAt(term, second) : NO_SECOND;
+            split.computeIfAbsent(key, k -> new ArrayList<String>()).add(term);
+        }
+        return split;
+    }
+
+    /**
+     * Waits for every future, unwrapping the first failure
+     */
+    private static <T> List<T> all (List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) { throw (IOException) cause; }
+            if (cause instanceof UncheckedIOException) { throw ((UncheckedIOException) cause).getCause(); }
+            if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+            throw new IOException(cause);
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,254 @@
+package main.textfill;
+
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics collected on a TernaryTreeTextFiller's hot paths: nodes visited
+ * per findQuery, and latency and, once enableAllocationTracking is called,
+ * bytes allocated per textFill and textFillPremium.
+ * <p>
+ * Shape metrics (node count and depth) are only measured when they are
+ * read, so the walk of the tree they need is paid for by whoever reads
+ * them, never by a query. A read retakes the snapshot if the tree has
+ * changed since the last one and that one is at least SHAPE_REFRESH_NANOS
+ * old. The TextFiller bumps a version number before and after each change
+ * to its tree. A walk that overlaps a change is thrown away, and the last
+ * snapshot is returned instead.
+ * <p>
+ * Every getter is safe to call from any thread, such as a JMX client's,
+ * at any time.
+ * <p>
+ * A TextFiller without metrics enabled pays only a null check per call.
+ */
+public class TextFillerMetrics implements TextFillerMetricsMBean {
+
+    // -----------------------------------------------------------
+    // Fields
+    // -----------------------------------------------------------
+    private final TernaryTreeTextFiller owner;
+    private final LongAdder queries = new LongAdder(),
+                            visited = new LongAdder();
+    final Operation textFill = new Operation(),
+                    textFillPremium = new Operation();
+    private ObjectName name;
+
+    /**
+     * Least time between two walks of the tree for its shape
+     */
+    static final long SHAPE_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private volatile long[] shape;
+    // Odd while the tree is being changed; shapeVersion is the version shape was walked at
+    private final AtomicLong version = new AtomicLong();
+    private volatile long shapeVersion;
+    private final AtomicLong shapeDue;
+    private volatile boolean trackAllocation;
+
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+
+    // -----------------------------------------------------------
+    // Constructor
+    // -----------------------------------------------------------
+    TextFillerMetrics (TernaryTreeTextFiller owner) {
+        this.owner = owner;
+        this.shape = owner.shape(() -> false);
+        this.shapeDue = new AtomicLong(System.nanoTime());
+    }
+
+
+    // -----------------------------------------------------------
+    // Methods
+    // -----------------------------------------------------------
+
+    /**
+     * Registers these metrics with the platform MBean server under the given name,
+     * e.g. "main.textfill:type=TextFiller,name=autocomplete".
+     * @param objectName The JMX ObjectName to register under
+     * @throws JMException If the name is malformed or already taken
+     */
+    public void register (String objectName) throws JMException {
+        unregister();
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        this.name = name;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     * @throws JMException If the server refuses
+     */
+    public void unregister () throws JMException {
+        if (this.name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+            this.name = null;
+        }
+    }
+
+    /**
+     * Starts measuring the bytes each textFill and textFillPremium allocates. This
+     * turns on thread allocation accounting for the whole JVM, which every thread
+     * then pays for, so it is left off unless asked for.
+     * @return Whether the JVM can measure allocation; if not, the allocation
+     * metrics stay 0
+     */
+    public boolean enableAllocationTracking () {
+        if (ALLOCATION) {
+            ((com.sun.management.ThreadMXBean) THREADS).setThreadAllocatedMemoryEnabled(true);
+            this.trackAllocation = true;
+        }
+        return ALLOCATION;
+    }
+
+    public long getNodeCount () {
+        return shape()[0];
+    }
+
+    public int getMaxDepth () {
+        return (int) shape()[1];
+    }
+
+    /**
+     * @return The average number of nodes visited to reach each stored term's last node
+     */
+    public double getAverageDepth () {
+        long[] shape = shape();
+        return shape[3] == 0 ? 0 : (double) shape[2] / shape[3];
+    }
+
+    public long getFindQueryCount () {
+        return queries.sum();
+    }
+
+    public double getAverageNodesVisited () {
+        long count = queries.sum();
+        return count == 0 ? 0 : (double) visited.sum() / count;
+    }
+
+    public long getTextFillCount ()                { return textFill.count.sum(); }
+    public long getTextFillP50Nanos ()             { return textFill.percentile(0.50); }
+    public long getTextFillP99Nanos ()             { return textFill.percentile(0.99); }
+    public long getTextFillMaxNanos ()             { return textFill.percentile(1.00); }
+    public double getTextFillAllocatedBytes ()     { return textFill.allocatedPerCall(); }
+
+    public long getTextFillPremiumCount ()         { return textFillPremium.count.sum(); }
+    public long getTextFillPremiumP50Nanos ()      { return textFillPremium.percentile(0.50); }
+    public long getTextFillPremiumP99Nanos ()      { return textFillPremium.percentile(0.99); }
+    public long getTextFillPremiumMaxNanos ()      { return textFillPremium.percentile(1.00); }
+    public double getTextFillPremiumAllocatedBytes () { return textFillPremium.allocatedPerCall(); }
+
+    public void reset () {
+        queries.reset();
+        visited.reset();
+        textFill.reset();
+        textFillPremium.reset();
+    }
+
+    // -----------------------------------------------------------
+    // Recording
+    // -----------------------------------------------------------
+
+    void queried (int nodesVisited) {
+        queries.increment();
+        visited.add(nodesVisited);
+    }
+
+    /**
+     * Called by the owner before every change to its tree
+     */
+    void treeChanging () {
+        version.incrementAndGet();
+        // Keep the change's own writes from being seen before the version
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Called by the owner after every change to its tree
+     */
+    void treeChanged () {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Retakes the shape snapshot if the tree has changed since the last one and
+     * it has fallen due, as a seqlock reader: the walk is kept only if the
+     * version was even before it and unchanged after it, and is given up as
+     * soon as the version moves, since a walk torn by a change may loop.
+     * @return The latest shape snapshot
+     */
+    private long[] shape () {
+        long seen = version.get();
+        if (seen == this.shapeVersion || (seen & 1) != 0) { return this.shape; }
+        long now = System.nanoTime(),
+             due = this.shapeDue.get();
+        if (now - due < 0 || !this.shapeDue.compareAndSet(due, now + SHAPE_REFRESH_NANOS)) { return this.shape; }
+        long[] walked = owner.shape(() -> version.get() != seen);
+        // Order the walk's reads of the tree before the version is read again
+        VarHandle.acquireFence();
+        if (walked != null && version.get() == seen) {
+            this.shape = walked;
+            this.shapeVersion = seen;
+        }
+        return this.shape;
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or 0 unless allocation
+     * tracking is enabled
+     */
+    long allocatedBytes () {
+        return this.trackAllocation ? ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Call count, latency histogram and allocation total of one operation.
+     * Latencies fall in bucket floor(log2(nanos)), so 64 buckets cover every long.
+     */
+    static class Operation {
+
+        final LongAdder count = new LongAdder(),
+                        allocated = new LongAdder();
+        final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        void record (long nanos, long bytes) {
+            count.increment();
+            allocated.add(bytes);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+        }
+
+        long percentile (double p) {
+            long total = count.sum(), seen = 0;
+            if (total == 0) { return 0; }
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        double allocatedPerCall () {
+            long total = count.sum();
+            return total == 0 ? 0 : (double) allocated.sum() / total;
+        }
+
+        void reset () {
+            count.reset();
+            allocated.reset();
+            for (int i = 0; i < 64; i++) {
+                buckets.set(i, 0);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,35 @@
+package main.textfill;
+
+/**
+ * JMX view of the metrics a TernaryTreeTextFiller collects once
+ * enableMetrics has been called. Latencies are in nanoseconds and are
+ * reported as the upper bound of the power-of-two bucket they fall in,
+ * and allocated bytes are 0 unless allocation tracking was enabled.
+ * The node count and depths come from a snapshot of the tree's shape,
+ * retaken when they are read, at most once a second, if the tree has
+ * changed.
+ */
+public interface TextFillerMetricsMBean {
+
+    long getNodeCount ();
+    int getMaxDepth ();
+    double getAverageDepth ();
+
+    long getFindQueryCount ();
+    double getAverageNodesVisited ();
+
+    long getTextFillCount ();
+    long getTextFillP50Nanos ();
+    long getTextFillP99Nanos ();
+    long getTextFillMaxNanos ();
+    double getTextFillAllocatedBytes ();
+
+    long getTextFillPremiumCount ();
+    long getTextFillPremiumP50Nanos ();
+    long getTextFillPremiumP99Nanos ();
+    long getTextFillPremiumMaxNanos ();
+    double getTextFillPremiumAllocatedBytes ();
+
+    void reset ();
+
+}
@@ -0,0 +1,1001 @@
+package test.textfill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import main.textfill.*;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.rules.Timeout;
+import org.junit.runner.Description;
+
+import static org.junit.Assert.*;
+
+import org.junit.AfterClass;
+
+public class TextFillerTests {
+
+    // =================================================
+    // Test Configuration
+    // =================================================
+
+    // Global timeout to prevent infinite loops from
+    // crashing the test suite
+    // [!] Comment out the next 2 lines if you're using
+    // the debugger!
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(1);
+
+    // Grade record-keeping
+    static int possible = 0, passed = 0;
+
+    // Each time you pass a test, you get a point! Yay!
+    // [!] Requires JUnit 4+ to run
+    @Rule
+    public TestWatcher watchman = new TestWatcher() {
+        @Override
+        protected void succeeded(Description description) {
+            passed++;
+        }
+    };
+
+    // Shared word list every TextFiller is checked against, in code point
+    // order so that each term's first completion is also its alphabetically
+    // first; includes accented and supplementary (emoji) characters
+    static final List<String> WORDS = Arrays.asList(
+        "a", "an", "and", "ant", "aａ", "a😀", "a😀b",
+        "car", "carbon", "card", "cart", "cat", "do", "dog", "emit",
+        "new jersey", "new york", "zebra", "émigré", "😀smile"
+    );
+
+    // Queries asked of every TextFiller: exact matches, prefixes, missing
+    // prefixes, case and whitespace variants, and half a surrogate pair
+    static final List<String> QUERIES = Arrays.asList(
+        "a", "an", "a😀", "\uD83D", "😀", "c", "ca", "car",
+        "CA", "d", "e", "É", "new", "new y", "  New J ", "x", "zebra", "zebras"
+    );
+
+    // Used as the basic TernaryTreeTextFiller holding WORDS, added in order,
+    // that every other TextFiller is compared to; the @Before method is
+    // run before every @Test
+    TernaryTreeTextFiller ttf;
+    @Before
+    public void init () {
+        possible++;
+        ttf = new TernaryTreeTextFiller();
+        for (String word : WORDS) {
+            ttf.add(word);
+        }
+    }
+
+    // Used for grading, reports the total number of tests
+    // passed over the total possible
+    @AfterClass
+    public static void gradeReport () {
+        System.out.println("============================");
+        System.out.println("Tests Complete");
+        System.out.println(passed + " / " + possible + " passed!");
+        if ((1.0 * passed / possible) >= 0.9) {
+            System.out.println("[!] Nice job!"); // Automated acclaim!
+        }
+        System.out.println("============================");
+    }
+
+    // Asserts that the given TextFiller holds the same terms as the reference
+    // and completes every shared query just as it does
+    static void assertSameAnswers (TextFiller expected, TextFiller actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.empty(), actual.empty());
+        assertEquals(expected.getSortedList(), actual.getSortedList());
+        for (String query : QUERIES) {
+            assertEquals(query, expected.contains(query), actual.contains(query));
+            assertEquals(query, expected.textFill(query), actual.textFill(query));
+        }
+    }
+
+
+    // Asserts that both trees give the same textFill and textFillPremium
+    // answers to every shared query
+    static void assertSameCompletions (TernaryTreeTextFiller expected, TernaryTreeTextFiller actual) {
+        for (String query : QUERIES) {
+            assertEquals(query, expected.textFill(query), actual.textFill(query));
+            assertEquals(query, expected.textFillPremium(query), actual.textFillPremium(query));
+        }
+    }
+
+    // Writes the given lines to a temporary UTF-8 file, one per line
+    static Path writeLines (List<String> lines) throws IOException {
+        Path file = Files.createTempFile("textfill", ".txt");
+        file.toFile().deleteOnExit();
+        return Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    // Exports the given TextFiller to a temporary dictionary file and maps it
+    static MappedTextFiller exportAndOpen (TextFiller source) throws IOException {
+        Path file = Files.createTempFile("textfill", ".ttf");
+        file.toFile().deleteOnExit();
+        MappedTextFiller.export(source, file);
+        return MappedTextFiller.open(file);
+    }
+
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testTernaryTree_t0() {
+        assertEquals(WORDS.size(), ttf.size());
+        assertEquals(WORDS, ttf.getSortedList());
+        assertTrue(ttf.contains("car"));
+        assertTrue(ttf.contains("  CAR "));
+        assertFalse(ttf.contains("ca"));
+        assertEquals("car", ttf.textFill("car"));
+        assertEquals("car", ttf.textFill("c"));
+        assertEquals("new jersey", ttf.textFill("new"));
+        assertNull(ttf.textFill("x"));
+        assertNull(ttf.textFill("zebras"));
+    }
+    @Test
+    public void testTernaryTree_t1() {
+        // Supplementary characters are whole code points, never split
+        assertTrue(ttf.contains("a😀"));
+        assertEquals("a😀", ttf.textFill("a😀"));
+        assertEquals("😀smile", ttf.textFill("😀"));
+        assertNull(ttf.textFill("\uD83D"));
+        assertEquals("émigré", ttf.textFill("É"));
+    }
+    @Test
+    public void testTernaryTree_t2() {
+        // Empty and all-whitespace input is rejected
+        for (String bad : Arrays.asList(null, "", "   ")) {
+            try {
+                ttf.textFill(bad);
+                fail("textFill accepted " + bad);
+            } catch (IllegalArgumentException e) {}
+            try {
+                ttf.add(bad);
+                fail("add accepted " + bad);
+            } catch (IllegalArgumentException e) {}
+        }
+        assertEquals(WORDS.size(), ttf.size());
+    }
+    @Test
+    public void testTernaryTree_t3() {
+        TernaryTreeTextFiller empty = new TernaryTreeTextFiller();
+        assertTrue(empty.empty());
+        assertEquals(0, empty.size());
+        assertNull(empty.textFill("a"));
+        assertNull(empty.textFillPremium("a"));
+        assertFalse(empty.remove("a"));
+        assertTrue(empty.getSortedList().isEmpty());
+    }
+    @Test
+    public void testTernaryTree_t4() {
+        // Removing an absent term, or a prefix of a stored one, changes nothing
+        assertFalse(ttf.remove("ca"));
+        assertFalse(ttf.remove("zebras"));
+        assertFalse(ttf.remove("\uD83D"));
+        assertEquals(WORDS, ttf.getSortedList());
+        assertTrue(ttf.remove("car"));
+        assertFalse(ttf.remove("car"));
+        assertFalse(ttf.contains("car"));
+        assertEquals("carbon", ttf.textFill("car"));
+        assertEquals(WORDS.size() - 1, ttf.size());
+    }
+    @Test
+    public void testTernaryTree_t5() {
+        ttf.add("card", 5);
+        ttf.add("cat", 9);
+        ttf.add("new york", 2);
+        assertEquals("cat", ttf.textFillPremium("c"));
+        // An exact match is its own best completion
+        assertEquals("car", ttf.textFillPremium("car"));
+        assertEquals("new york", ttf.textFillPremium("new"));
+        assertEquals("car", ttf.textFill("c"));
+        // Ties fall to the alphabetically first term
+        assertEquals("a", ttf.textFillPremium("a"));
+        assertEquals("dog", ttf.textFillPremium("dog"));
+        assertNull(ttf.textFillPremium("x"));
+    }
+    @Test
+    public void testConcurrentTextFiller_t0() {
+        ConcurrentTextFiller ctf = new ConcurrentTextFiller();
+        for (String word : WORDS) {
+            ctf.add(word);
+        }
+        assertSameAnswers(ttf, ctf);
+    }
+    @Test
+    public void testConcurrentTextFiller_t1() {
+        // Added in reverse, both trees still agree term for term
+        TernaryTreeTextFiller reversed = new TernaryTreeTextFiller();
+        ConcurrentTextFiller ctf = new ConcurrentTextFiller();
+        for (int i = WORDS.size() - 1; i >= 0; i--) {
+            reversed.add(WORDS.get(i));
+            ctf.add(WORDS.get(i));
+        }
+        assertSameAnswers(reversed, ctf);
+        assertFalse(ctf.remove("ca"));
+        assertFalse(ctf.remove("zebras"));
+        assertTrue(ctf.remove("a😀"));
+        assertTrue(reversed.remove("a😀"));
+        assertSameAnswers(reversed, ctf);
+    }
+    @Test
+    public void testConcurrentTextFiller_t2() throws InterruptedException {
+        ConcurrentTextFiller ctf = new ConcurrentTextFiller();
+        Thread[] writers = new Thread[2];
+        for (int t = 0; t < writers.length; t++) {
+            int first = t;
+            writers[t] = new Thread(() -> {
+                for (int i = first; i < WORDS.size(); i += writers.length) {
+                    ctf.add(WORDS.get(i));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(WORDS, ctf.getSortedList());
+        assertEquals(WORDS.size(), ctf.size());
+        try {
+            ctf.add("  ");
+            fail("add accepted blank term");
+        } catch (IllegalArgumentException e) {}
+    }
+    @Test
+    public void testMappedTextFiller_t0() throws IOException {
+        MappedTextFiller mapped = exportAndOpen(ttf);
+        assertSameAnswers(ttf, mapped);
+        assertEquals(Arrays.asList("car", "carbon", "card", "cart"), mapped.getCompletions("CAR"));
+        assertEquals(Arrays.asList("a😀", "a😀b"), mapped.getCompletions("a😀"));
+        assertTrue(mapped.getCompletions("x").isEmpty());
+    }
+    @Test
+    public void testMappedTextFiller_t1() throws IOException {
+        // Built balanced, completions still don't depend on the source's insertion order
+        TernaryTreeTextFiller reversed = new TernaryTreeTextFiller();
+        for (int i = WORDS.size() - 1; i >= 0; i--) {
+            reversed.add(WORDS.get(i));
+        }
+        assertSameAnswers(ttf, exportAndOpen(reversed));
+    }
+    @Test
+    public void testMappedTextFiller_t2() throws IOException {
+        MappedTextFiller empty = exportAndOpen(new TernaryTreeTextFiller());
+        assertTrue(empty.empty());
+        assertNull(empty.textFill("a"));
+        assertTrue(empty.getSortedList().isEmpty());
+        try {
+            empty.add("a");
+            fail("mapped dictionary accepted add");
+        } catch (UnsupportedOperationException e) {}
+        try {
+            empty.textFill("");
+            fail("textFill accepted empty query");
+        } catch (IllegalArgumentException e) {}
+    }
+    @Test
+    public void testMappedTextFiller_t3() throws IOException {
+        Path file = Files.createTempFile("textfill", ".ttf");
+        file.toFile().deleteOnExit();
+        MappedTextFiller.export(ttf, file);
+        byte[] image = Files.readAllBytes(file);
+
+        // Truncated anywhere, short of a whole header, or with a bad magic
+        for (byte[] bad : Arrays.asList(Arrays.copyOf(image, image.length - 1),
+                                        Arrays.copyOf(image, 10),
+                                        new byte[image.length])) {
+            Files.write(file, bad);
+            try {
+                MappedTextFiller.open(file);
+                fail("open accepted a corrupt file of " + bad.length + " bytes");
+            } catch (IOException e) {}
+        }
+        // A child index pointing past the last node, or back up the tree
+        for (int child : new int[] {Integer.MAX_VALUE, 0}) {
+            byte[] corrupt = image.clone();
+            ByteBuffer.wrap(corrupt).putInt(16 + 8, child);
+            Files.write(file, corrupt);
+            try {
+                MappedTextFiller.open(file);
+                fail("open accepted child " + child);
+            } catch (IOException e) {}
+        }
+        Files.write(file, image);
+        assertSameAnswers(ttf, MappedTextFiller.open(file));
+    }
+    @Test
+    public void testDawgTextFiller_t0() {
+        DawgTextFiller dawg = DawgTextFiller.minimize(ttf);
+        assertSameAnswers(ttf, dawg);
+        // Shared suffixes, like "d" after "an" and "car", are stored once
+        assertEquals(43, dawg.stateCount());
+    }
+    @Test
+    public void testDawgTextFiller_t1() {
+        // Minimizing another TextFiller, or the graph itself, keeps every answer
+        ConcurrentTextFiller ctf = new ConcurrentTextFiller();
+        for (int i = WORDS.size() - 1; i >= 0; i--) {
+            ctf.add(WORDS.get(i));
+        }
+        DawgTextFiller dawg = DawgTextFiller.minimize(ctf);
+        assertSameAnswers(ttf, dawg);
+        assertSameAnswers(ttf, DawgTextFiller.minimize(dawg));
+    }
+    @Test
+    public void testDawgTextFiller_t2() {
+        DawgTextFiller empty = DawgTextFiller.minimize(new TernaryTreeTextFiller());
+        assertTrue(empty.empty());
+        assertEquals(0, empty.size());
+        assertNull(empty.textFill("a"));
+        assertFalse(empty.contains("a"));
+        try {
+            empty.remove("a");
+            fail("minimized graph accepted remove");
+        } catch (UnsupportedOperationException e) {}
+    }
+    @Test
+    public void testTextFillFuzzy_t0() {
+        assertEquals(Arrays.asList("cat"), ttf.textFillFuzzy("cst", 1, 10));
+        assertEquals(Arrays.asList("do", "dog"), ttf.textFillFuzzy("DGO", 1, 10));
+        assertEquals(Arrays.asList("new york"), ttf.textFillFuzzy("nwe y", 2, 3));
+        assertEquals(Arrays.asList("😀smile"), ttf.textFillFuzzy("😀smole", 1, 3));
+        assertTrue(ttf.textFillFuzzy("xyz", 1, 3).isEmpty());
+    }
+    @Test
+    public void testTextFillFuzzy_t1() {
+        // Fewest edits first, then highest priority, then alphabetical
+        ttf.add("cart", 4);
+        ttf.add("carbon", 6);
+        assertEquals(Arrays.asList("cat", "carbon", "cart"), ttf.textFillFuzzy("cat", 1, 3));
+        assertEquals(Arrays.asList("carbon", "cart", "car", "card"), ttf.textFillFuzzy("car", 0, 10));
+        assertEquals(Arrays.asList("carbon", "cart"), ttf.textFillFuzzy("car", 0, 2));
+    }
+    @Test
+    public void testTextFillFuzzy_t2() {
+        assertTrue(new TernaryTreeTextFiller().textFillFuzzy("a", 2, 5).isEmpty());
+        try {
+            ttf.textFillFuzzy("car", -1, 5);
+            fail("textFillFuzzy accepted negative distance");
+        } catch (IllegalArgumentException e) {}
+        try {
+            ttf.textFillFuzzy("car", 1, 0);
+            fail("textFillFuzzy accepted zero limit");
+        } catch (IllegalArgumentException e) {}
+        try {
+            ttf.textFillFuzzy(" ", 1, 5);
+            fail("textFillFuzzy accepted blank query");
+        } catch (IllegalArgumentException e) {}
+    }
+    @Test
+    public void testTermNormalizer_t0() {
+        TermNormalizer n = TermNormalizer.DEFAULT;
+        assertEquals("new york", n.normalize("  New York\t"));
+        assertEquals("émigré", n.normalize("ÉMIGRÉ"));
+        // Upper, lower and final sigma fold together
+        assertEquals(n.normalize("Σ"), n.normalize("ς"));
+        assertEquals(n.normalize("Σ"), n.normalize("σ"));
+        // Supplementary letters fold as whole code points
+        assertEquals("\uD801\uDC28", n.normalize("\uD801\uDC00"));
+        assertEquals("a😀b", n.normalize("A😀B"));
+    }
+    @Test
+    public void testTermNormalizer_t1() {
+        TermNormalizer n = new TermNormalizer(false, true);
+        assertEquals("Emigre", n.normalize("Émigré"));
+        // Combining accents are dropped, precomposed ones decomposed
+        assertEquals("emigre", n.normalize("e\u0301migre\u0301"));
+        assertEquals("Ab", new TermNormalizer(false, false).normalize(" Ab "));
+
+        TernaryTreeTextFiller stripped = new TernaryTreeTextFiller(new TermNormalizer(true, true));
+        stripped.add("Émigré");
+        assertTrue(stripped.contains("emigre"));
+        assertTrue(stripped.contains("e\u0301migre"));
+        assertEquals("emigre", stripped.textFill("EM"));
+        // Letters well past the basic Latin blocks fold too
+        assertEquals("nguyen", new TermNormalizer(true, true).normalize("Nguyễn"));
+        assertEquals("y", n.normalize("ỹ"));
+        assertEquals("αι", n.normalize("ᾄὶ"));
+        stripped.add("Nguyễn");
+        assertTrue(stripped.contains("nguyen"));
+    }
+    @Test
+    public void testTermNormalizer_t2() {
+        TermNormalizer n = TermNormalizer.DEFAULT;
+        String s = " a😀b ";
+        int i = n.start(s), end = n.end(s);
+        assertEquals(1, i);
+        assertEquals(5, end);
+        assertEquals('a', n.codePointAt(s, i));
+        i = n.next(s, i, end);
+        assertEquals(0x1F600, n.codePointAt(s, i));
+        i = n.next(s, i, end);
+        assertEquals('b', n.codePointAt(s, i));
+        assertEquals(end, n.next(s, i, end));
+    }
+    @Test
+    public void testTermNormalizer_t3() {
+        // Nothing significant to walk is rejected
+        TermNormalizer stripping = new TermNormalizer(true, true);
+        for (String bad : Arrays.asList(null, "", " \t\n", "\u2003", "\u0301\u0308")) {
+            try {
+                stripping.start(bad);
+                fail("start accepted " + bad);
+            } catch (IllegalArgumentException e) {}
+        }
+        assertEquals("\u0301", TermNormalizer.DEFAULT.normalize("\u0301"));
+    }
+    @Test
+    public void testRemove_t0() {
+        ttf.add("carbon", 8);
+        ttf.add("cart", 3);
+        assertEquals("carbon", ttf.textFillPremium("ca"));
+        // Removing the best term repairs the priority maxima above it
+        assertTrue(ttf.remove("carbon"));
+        assertEquals("cart", ttf.textFillPremium("ca"));
+        assertNull(ttf.textFill("carb"));
+        assertFalse(ttf.contains("carbon"));
+        assertTrue(ttf.contains("car"));
+        assertEquals(WORDS.size() - 1, ttf.size());
+    }
+    @Test
+    public void testRemove_t1() {
+        for (String word : WORDS) {
+            assertTrue(ttf.remove(word.toUpperCase()));
+        }
+        assertTrue(ttf.empty());
+        assertEquals(0, ttf.size());
+        assertNull(ttf.textFill("a"));
+        ttf.add("a😀");
+        assertEquals(Arrays.asList("a😀"), ttf.getSortedList());
+    }
+    @Test
+    public void testUpdatePriority_t0() {
+        assertFalse(ttf.updatePriority("ca", 5));
+        assertFalse(ttf.updatePriority("zebras", 5));
+        assertFalse(ttf.contains("ca"));
+        assertEquals(WORDS.size(), ttf.size());
+
+        assertTrue(ttf.updatePriority("cart", 5));
+        assertEquals("cart", ttf.textFillPremium("ca"));
+        assertTrue(ttf.updatePriority("cat", 7));
+        assertEquals("cat", ttf.textFillPremium("ca"));
+        // Lowering the best term's priority hands the prefix back
+        assertTrue(ttf.updatePriority("cat", 1));
+        assertEquals("cart", ttf.textFillPremium("ca"));
+        assertEquals(WORDS.size(), ttf.size());
+    }
+    @Test
+    public void testUpdatePriority_t1() {
+        // Adding a stored term with a priority re-prioritizes it
+        ttf.add("dog", 4);
+        ttf.add("DOG", 2);
+        ttf.add("do", 3);
+        assertEquals(WORDS.size(), ttf.size());
+        assertEquals("do", ttf.textFillPremium("d"));
+        ttf.add("dogma", 1);
+        assertEquals(WORDS.size() + 1, ttf.size());
+        assertEquals("dog", ttf.textFillPremium("dog"));
+        assertEquals("dogma", ttf.textFillPremium("dogm"));
+    }
+    @Test
+    public void testPrefixCache_t0() {
+        TernaryTreeTextFiller cached = new TernaryTreeTextFiller();
+        for (String word : WORDS) {
+            cached.add(word);
+        }
+        // Shallow table for one code point, a small LRU beyond that
+        cached.enablePrefixCache(1, 4);
+        assertSameCompletions(ttf, cached);
+        assertSameCompletions(ttf, cached);
+
+        // Every change is seen by both the table and the LRU
+        for (TernaryTreeTextFiller t : Arrays.asList(ttf, cached)) {
+            t.add("carbon", 5);
+            t.add("cab", 2);
+            t.remove("cat");
+            t.updatePriority("new york", 3);
+            t.add("x-ray");
+        }
+        assertSameCompletions(ttf, cached);
+        assertEquals("carbon", cached.textFillPremium("c"));
+        assertEquals("x-ray", cached.textFill("x"));
+        assertNull(cached.textFill("cat"));
+    }
+    @Test
+    public void testPrefixCache_t1() {
+        TernaryTreeTextFiller cached = new TernaryTreeTextFiller();
+        cached.enablePrefixCache(2, 0);
+        assertNull(cached.textFill("a"));
+        cached.add("a😀b", 1);
+        assertEquals("a😀b", cached.textFill("a"));
+        assertEquals("a😀b", cached.textFillPremium("a😀"));
+        assertTrue(cached.remove("a😀b"));
+        assertNull(cached.textFill("a😀"));
+        cached.disablePrefixCache();
+        assertNull(cached.textFill("a"));
+        try {
+            cached.enablePrefixCache(-1, 4);
+            fail("enablePrefixCache accepted negative depth");
+        } catch (IllegalArgumentException e) {}
+    }
+    @Test
+    public void testTextFillAll_t0() {
+        String[] answers = ttf.textFillAll(QUERIES);
+        assertEquals(QUERIES.size(), answers.length);
+        for (int i = 0; i < answers.length; i++) {
+            assertEquals(QUERIES.get(i), ttf.textFill(QUERIES.get(i)), answers[i]);
+        }
+        assertEquals(0, ttf.textFillAll(new ArrayList<String>()).length);
+    }
+    @Test
+    public void testTextFillAll_t1() {
+        // Large enough to be split into several runs across the pool
+        List<String> queries = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            queries.add(QUERIES.get(i % QUERIES.size()) + (i % 7 == 0 ? "s" : ""));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String[] parallel = ttf.textFillAll(queries, pool),
+                     serial = ttf.textFillAll(queries);
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(queries.get(i), ttf.textFill(queries.get(i)), parallel[i]);
+                assertEquals(queries.get(i), parallel[i], serial[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    @Test
+    public void testTextFillAll_t2() {
+        String[] answers = new TernaryTreeTextFiller().textFillAll(QUERIES);
+        assertEquals(QUERIES.size(), answers.length);
+        for (String answer : answers) {
+            assertNull(answer);
+        }
+        try {
+            ttf.textFillAll(Arrays.asList("car", " ", "cat"));
+            fail("textFillAll accepted blank query");
+        } catch (IllegalArgumentException e) {}
+    }
+    @Test
+    public void testRadixTextFiller_t0() {
+        RadixTextFiller radix = new RadixTextFiller();
+        for (String word : WORDS) {
+            radix.add(word);
+        }
+        assertSameAnswers(ttf, radix);
+        // One node per branch point rather than per character
+        assertTrue(radix.nodeCount() < 40);
+        radix.add("CAR");
+        assertEquals(WORDS.size(), radix.size());
+    }
+    @Test
+    public void testRadixTextFiller_t1() {
+        RadixTextFiller radix = new RadixTextFiller();
+        TernaryTreeTextFiller reversed = new TernaryTreeTextFiller();
+        for (int i = WORDS.size() - 1; i >= 0; i--) {
+            radix.add(WORDS.get(i));
+            reversed.add(WORDS.get(i));
+        }
+        assertSameAnswers(reversed, radix);
+        assertFalse(radix.remove("ca"));
+        assertFalse(radix.remove("zebras"));
+        assertFalse(radix.remove("\uD83D"));
+        // Removing "new york" leaves "new " with one branch to re-merge
+        for (String word : Arrays.asList("car", "cat", "new york")) {
+            assertTrue(radix.remove(word));
+            assertTrue(reversed.remove(word));
+        }
+        assertSameAnswers(reversed, radix);
+    }
+    @Test
+    public void testRadixTextFiller_t2() {
+        // Random adds and removes over a small alphabet keep both trees in step
+        Random random = new Random(281);
+        String[] letters = {"a", "b", "ab", "😀", "ｂ"};
+        RadixTextFiller radix = new RadixTextFiller();
+        TernaryTreeTextFiller tree = new TernaryTreeTextFiller();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int n = 1 + random.nextInt(4); n > 0; n--) {
+                sb.append(letters[random.nextInt(letters.length)]);
+            }
+            String term = sb.toString();
+            if (random.nextInt(3) == 0) {
+                assertEquals(term, tree.remove(term), radix.remove(term));
+            } else {
+                tree.add(term);
+                radix.add(term);
+            }
+            assertEquals(term, tree.textFill(term.substring(0, 1)), radix.textFill(term.substring(0, 1)));
+        }
+        assertEquals(tree.getSortedList(), radix.getSortedList());
+        assertEquals(tree.size(), radix.size());
+    }
+    @Test
+    public void testTextFillerLoader_t0() throws IOException {
+        TernaryTreeTextFiller loaded = TextFillerLoader.load(writeLines(WORDS));
+        assertSameAnswers(ttf, loaded);
+        assertSameCompletions(ttf, loaded);
+        assertTrue(TextFillerLoader.load(writeLines(Arrays.asList())).empty());
+    }
+    @Test
+    public void testTextFillerLoader_t1() throws IOException {
+        // Blank by the normalizer's rules, not String.trim's, so em spaces
+        // and lines of accents alone are skipped rather than failing the load
+        List<String> lines = Arrays.asList(
+            "Car", "", "   ", "\u2003", "\u0301\u0308", " \u2003\u0301 ", "e\u0301migre\u0301", "cat\r", "😀smile"
+        );
+        TernaryTreeTextFiller loaded = TextFillerLoader.load(writeLines(lines),
+                ForkJoinPool.commonPool(), new TermNormalizer(true, true));
+        assertEquals(Arrays.asList("car", "cat", "emigre", "😀smile"), loaded.getSortedList());
+        assertEquals("emigre", loaded.textFill("É"));
+
+        TernaryTreeTextFiller plain = TextFillerLoader.load(writeLines(lines));
+        // Without stripping, accents are kept as written
+        assertEquals(Arrays.asList("car", "cat", "e\u0301migre\u0301", "\u0301", "\u0301\u0308", "😀smile"),
+                plain.getSortedList());
+    }
+    @Test
+    public void testTextFillerLoader_t2() throws IOException {
+        // Nearly every term shares a first letter, so that bucket is split by its
+        // second, including the one-letter term, and stitched back under one node
+        List<String> lines = new ArrayList<String>();
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder term = new StringBuilder("c");
+            for (int length = random.nextInt(5); length > 0; length--) {
+                term.append((char) ('a' + random.nextInt(6)));
+            }
+            lines.add(term.toString());
+        }
+        lines.addAll(Arrays.asList("C", "ant", "zoo", "cé"));
+        TernaryTreeTextFiller sequential = new TernaryTreeTextFiller();
+        for (String line : lines) {
+            sequential.add(line);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TernaryTreeTextFiller loaded = TextFillerLoader.load(writeLines(lines), pool, TermNormalizer.DEFAULT);
+            assertSameAnswers(sequential, loaded);
+            assertSameCompletions(sequential, loaded);
+            for (String query : Arrays.asList("c", "ca", "cf", "cé", "cab", "a", "z")) {
+                assertEquals(query, sequential.textFill(query), loaded.textFill(query));
+                assertEquals(query, sequential.textFillPremium(query), loaded.textFillPremium(query));
+            }
+            assertTrue(loaded.contains("c"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    @Test
+    public void testInfixIndex_t0() {
+        ttf.enableInfixSearch();
+        assertEquals(Arrays.asList("new york"), ttf.textFillInfix("YORK", 5));
+        assertEquals(Arrays.asList("car", "carbon", "card", "cart"), ttf.textFillInfix("ar", 5));
+        assertEquals(Arrays.asList("a😀", "a😀b", "😀smile"), ttf.textFillInfix("😀", 5));
+        assertEquals(Arrays.asList("émigré"), ttf.textFillInfix("GRÉ", 5));
+        assertTrue(ttf.textFillInfix("xyz", 5).isEmpty());
+        // Best priority first, then alphabetical
+        ttf.add("cart", 3);
+        ttf.add("ant", 1);
+        assertEquals(Arrays.asList("cart", "ant", "cat"), ttf.textFillInfix("t", 3));
+    }
+    @Test
+    public void testInfixIndex_t1() {
+        ttf.enableInfixSearch();
+        assertEquals(Arrays.asList("cart"), ttf.textFillInfix("rt", 5));
+        // Changes after the index is built are seen by the next search
+        ttf.add("start");
+        ttf.add("art", 4);
+        assertTrue(ttf.remove("cart"));
+        assertEquals(Arrays.asList("art", "start"), ttf.textFillInfix("rt", 5));
+        ttf.updatePriority("start", 9);
+        assertEquals(Arrays.asList("start", "art"), ttf.textFillInfix("rt", 5));
+        ttf.add("cart", 5);
+        assertTrue(ttf.remove("start"));
+        assertEquals(Arrays.asList("cart", "art"), ttf.textFillInfix("RT", 5));
+        assertEquals(Arrays.asList("cart"), ttf.textFillInfix("rt", 1));
+    }
+    @Test
+    public void testInfixIndex_t2() {
+        ttf.enableInfixSearch();
+        assertEquals(1, ttf.textFillInfix("zebra", 5).size());
+        // Enough adds to call for a rebuild, with every term still found after it
+        for (int i = 0; i < 5000; i++) {
+            ttf.add("zebra " + i, i % 10);
+        }
+        assertEquals(Arrays.asList("zebra 9", "zebra 909"), ttf.textFillInfix("a 9", 2));
+        assertEquals(Arrays.asList("zebra 4999"), ttf.textFillInfix("4999", 5));
+        ttf.remove("zebra 4999");
+        assertTrue(ttf.textFillInfix("4999", 5).isEmpty());
+
+        // A standalone index is a snapshot of the terms it was built from
+        InfixIndex snapshot = InfixIndex.build(ttf);
+        ttf.add("zebrafish");
+        assertEquals(WORDS.size() + 4999, snapshot.size());
+        assertTrue(snapshot.search("fish", 5).isEmpty());
+    }
+    @Test
+    public void testInfixIndex_t4() {
+        // Many terms to a block, so short queries skip blocks by their priority bound
+        TernaryTreeTextFiller filler = new TernaryTreeTextFiller();
+        Map<String, Integer> priorities = new HashMap<String, Integer>();
+        Random random = new Random(37);
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder term = new StringBuilder();
+            for (int j = random.nextInt(6) + 1; j > 0; j--) {
+                term.append((char) ('a' + random.nextInt(6)));
+            }
+            priorities.put(term.toString(), random.nextInt(50));
+            filler.add(term.toString(), priorities.get(term.toString()));
+        }
+        filler.enableInfixSearch();
+        String[] queries = { "a", "f", "ab", "cde" };
+        for (int round = 0; round < 3; round++) {
+            for (String query : queries) {
+                List<String> expected = new ArrayList<String>();
+                for (String term : priorities.keySet()) {
+                    if (term.contains(query)) { expected.add(term); }
+                }
+                expected.sort((x, y) -> priorities.get(x).equals(priorities.get(y))
+                        ? x.compareTo(y) : priorities.get(y) - priorities.get(x));
+                assertEquals(expected.subList(0, Math.min(4, expected.size())), filler.textFillInfix(query, 4));
+            }
+            // Raised priorities lift their blocks' bounds, so they are still found
+            for (String term : new ArrayList<String>(priorities.keySet()).subList(0, 20 * (round + 1))) {
+                priorities.put(term, 50 + random.nextInt(10));
+                filler.updatePriority(term, priorities.get(term));
+            }
+        }
+    }
+    @Test
+    public void testInfixIndex_t3() {
+        try {
+            ttf.textFillInfix("a", 5);
+            fail("textFillInfix ran with infix search disabled");
+        } catch (IllegalStateException e) {}
+        ttf.enableInfixSearch();
+        try {
+            ttf.textFillInfix("a", 0);
+            fail("textFillInfix accepted zero limit");
+        } catch (IllegalArgumentException e) {}
+        ttf.disableInfixSearch();
+        try {
+            ttf.textFillInfix("a", 5);
+            fail("textFillInfix ran after infix search was disabled");
+        } catch (IllegalStateException e) {}
+    }
+    @Test
+    public void testTextFillerMetrics_t0() {
+        TextFillerMetrics metrics = ttf.enableMetrics();
+        // One node per distinct prefix of the shared words
+        assertEquals(54, metrics.getNodeCount());
+        assertTrue(metrics.getMaxDepth() >= 10);
+        assertTrue(metrics.getAverageDepth() > 1);
+        assertEquals(0, metrics.getFindQueryCount());
+
+        for (String query : QUERIES) {
+            ttf.textFill(query);
+        }
+        ttf.textFillPremium("car");
+        assertEquals(QUERIES.size() + 1, metrics.getFindQueryCount());
+        assertEquals(QUERIES.size(), metrics.getTextFillCount());
+        assertEquals(1, metrics.getTextFillPremiumCount());
+        assertTrue(metrics.getAverageNodesVisited() >= 1);
+        assertTrue(metrics.getTextFillP50Nanos() <= metrics.getTextFillP99Nanos());
+        assertTrue(metrics.getTextFillP99Nanos() <= metrics.getTextFillMaxNanos());
+        // Allocation is only measured once asked for
+        assertEquals(0, metrics.getTextFillAllocatedBytes(), 0);
+        if (metrics.enableAllocationTracking()) {
+            ttf.textFill("ca");
+            assertTrue(metrics.getTextFillAllocatedBytes() > 0);
+        }
+
+        metrics.reset();
+        assertEquals(0, metrics.getFindQueryCount());
+        assertEquals(0, metrics.getTextFillMaxNanos());
+        assertEquals(54, metrics.getNodeCount());
+    }
+    @Test
+    public void testTextFillerMetrics_t1() throws InterruptedException {
+        TextFillerMetrics metrics = ttf.enableMetrics();
+        // Shape is walked when read, not by queries or changes
+        ttf.add("zebrafish");
+        long grown = metrics.getNodeCount();
+        assertTrue(grown > 54);
+        // Within a refresh interval of the last walk, reads keep that snapshot,
+        // and reads from another thread while the tree changes see a whole one
+        long[] polled = new long[1];
+        Thread poller = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                long count = metrics.getNodeCount();
+                polled[0] = count == grown ? polled[0] : count;
+            }
+        });
+        poller.start();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ttf.remove("zebrafish"));
+            ttf.add("zebrafish");
+        }
+        poller.join();
+        assertEquals(0, polled[0]);
+        assertEquals(grown, metrics.getNodeCount());
+
+        long queried = metrics.getFindQueryCount();
+        ttf.disableMetrics();
+        assertNull(ttf.textFill("zebras"));
+        assertEquals(queried, metrics.getFindQueryCount());
+    }
+    @Test
+    public void testOffHeapTextFiller_t0() {
+        OffHeapTextFiller offHeap = new OffHeapTextFiller();
+        for (String word : WORDS) {
+            offHeap.add(word);
+        }
+        assertSameAnswers(ttf, offHeap);
+        assertFalse(offHeap.remove("ca"));
+        assertFalse(offHeap.remove("zebras"));
+        assertFalse(offHeap.remove("\uD83D"));
+        for (String word : WORDS) {
+            assertTrue(offHeap.remove(word));
+            assertTrue(ttf.remove(word));
+            assertSameAnswers(ttf, offHeap);
+        }
+        assertTrue(offHeap.empty());
+    }
+    @Test
+    public void testOffHeapTextFiller_t1() {
+        // Random adds and removes keep it in step with the tree
+        Random random = new Random(281);
+        String[] letters = {"a", "b", "ab", "😀", "é"};
+        OffHeapTextFiller offHeap = new OffHeapTextFiller(new TermNormalizer(true, true));
+        TernaryTreeTextFiller tree = new TernaryTreeTextFiller(new TermNormalizer(true, true));
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int n = 1 + random.nextInt(4); n > 0; n--) {
+                sb.append(letters[random.nextInt(letters.length)]);
+            }
+            String term = sb.toString();
+            if (random.nextInt(3) == 0) {
+                assertEquals(term, tree.remove(term), offHeap.remove(term));
+            } else {
+                tree.add(term);
+                offHeap.add(term);
+            }
+            assertEquals(term, tree.textFill(term.substring(0, 1)), offHeap.textFill(term.substring(0, 1)));
+        }
+        assertEquals(tree.getSortedList(), offHeap.getSortedList());
+        assertEquals(tree.size(), offHeap.size());
+    }
+    @Test
+    public void testOffHeapTextFiller_t2() {
+        // Nodes freed by remove are reused, so churning through far more
+        // nodes than one chunk holds never reserves a second chunk
+        OffHeapTextFiller offHeap = new OffHeapTextFiller();
+        long reserved = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (String word : WORDS) {
+                offHeap.add(word + " round " + round);
+            }
+            if (round == 0) {
+                reserved = offHeap.reservedBytes();
+            }
+            for (String word : WORDS) {
+                assertTrue(offHeap.remove(word + " round " + round));
+            }
+        }
+        assertTrue(reserved > 0);
+        assertEquals(reserved, offHeap.reservedBytes());
+        assertTrue(offHeap.empty());
+        offHeap.add("😀smile");
+        assertEquals("😀smile", offHeap.textFill("😀"));
+        assertEquals(0, new OffHeapTextFiller().reservedBytes());
+    }
+    @Test
+    public void testFeedbackRanking_t0() {
+        ttf.enableFeedbackRanking(100, 10);
+        assertEquals("car", ttf.textFillPremium("ca"));
+        ttf.recordSelection("ca", "cart");
+        ttf.recordSelection("CA", "Cart");
+        ttf.recordSelection("c", "cat");
+        // Selections only count once applied
+        assertEquals("car", ttf.textFillPremium("ca"));
+        assertEquals(3, ttf.applySelections());
+        assertEquals("cart", ttf.textFillPremium("ca"));
+        assertEquals(0, ttf.applySelections());
+
+        ttf.recordSelection("c", "cat");
+        ttf.recordSelection("c", "cat");
+        assertEquals(2, ttf.applySelections());
+        assertEquals("cat", ttf.textFillPremium("ca"));
+        assertEquals(WORDS.size(), ttf.size());
+    }
+    @Test
+    public void testFeedbackRanking_t1() {
+        // Applied selections rerank infix results in place
+        ttf.enableInfixSearch();
+        ttf.enableFeedbackRanking(1, 1);
+        assertEquals(Arrays.asList("car", "carbon"), ttf.textFillInfix("ar", 2));
+        ttf.recordSelection("car", "cart");
+        ttf.applySelections();
+        assertEquals(Arrays.asList("cart", "car"), ttf.textFillInfix("ar", 2));
+
+        // Enough selections to rescale every priority keep both in step
+        for (int i = 0; i < 40; i++) {
+            ttf.recordSelection("ca", "card");
+        }
+        ttf.recordSelection("d", "dog");
+        ttf.applySelections();
+        // With a half-life of one selection, cart's has long since decayed away
+        assertEquals(Arrays.asList("card", "car"), ttf.textFillInfix("ar", 2));
+        assertEquals("card", ttf.textFillPremium("c"));
+        assertEquals("dog", ttf.textFillPremium("d"));
+    }
+    @Test
+    public void testFeedbackRanking_t2() throws InterruptedException {
+        // Selections racing applySelections are never lost
+        ttf.enableFeedbackRanking(1000, 1);
+        Thread[] users = new Thread[3];
+        for (int t = 0; t < users.length; t++) {
+            users[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    ttf.recordSelection("c", i % 2 == 0 ? "car" : "cat");
+                }
+            });
+            users[t].start();
+        }
+        long applied = 0;
+        while (users[0].isAlive() || users[1].isAlive() || users[2].isAlive()) {
+            applied += ttf.applySelections();
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+        applied += ttf.applySelections();
+        assertEquals(60000, applied);
+    }
+    @Test
+    public void testFeedbackRanking_t3() {
+        try {
+            ttf.recordSelection("c", "car");
+            fail("recordSelection ran with feedback ranking disabled");
+        } catch (IllegalStateException e) {}
+        ttf.enableFeedbackRanking(10, 1);
+        try {
+            ttf.recordSelection("d", "car");
+            fail("recordSelection accepted a term not beginning with its prefix");
+        } catch (IllegalArgumentException e) {}
+        // Selections of terms no longer stored are dropped
+        ttf.recordSelection("x", "xylophone");
+        ttf.recordSelection("c", "car");
+        assertTrue(ttf.remove("car"));
+        assertEquals(2, ttf.applySelections());
+        assertFalse(ttf.contains("car"));
+        assertFalse(ttf.contains("xylophone"));
+        ttf.disableFeedbackRanking();
+        try {
+            ttf.applySelections();
+            fail("applySelections ran after feedback ranking was disabled");
+        } catch (IllegalStateException e) {}
+    }
+
+}